@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A configuration element in server.xml (e.g. executor, dataSource, httpEndpoint) as recorded by the ServerXMLIndex.
+ * The type of a nested element starts with the type of its parent, e.g. "httpEndpoint>httpOptions".
+ */
+public class ConfigElement {
+    /**
+     * Separates the parent type from the element name in the type of a nested element
+     */
+    public static final String NESTED = ">";
+
+    private final String type;
+    private final String id;
+    private volatile int ordinal;
+    private final Map<String, String> attributes = new LinkedHashMap<>();
+
+    /**
+     * Creates a config element
+     * @param type The element type, e.g. "executor" or "dataSource>connectionManager"
+     * @param id The value of the id attribute, or null if the element doesn't have one
+     * @param ordinal The position of this element among the elements of the same type in server.xml, in document order
+     */
+    public ConfigElement(String type, String id, int ordinal) {
+        this.type = type;
+        this.id = id;
+        this.ordinal = ordinal;
+    }
+
+    public String getType() { return this.type; }
+
+    public String getId() { return this.id; }
+
+    /**
+     * @return The element name without the types of its parents, e.g. "connectionManager"
+     */
+    public String getName() {
+        return type.substring(type.lastIndexOf(NESTED) + 1);
+    }
+
+    public int getOrdinal() { return this.ordinal; }
+
+    /**
+     * @return The key used to look this element up in the index, e.g. "dataSource[DefaultDataSource]"
+     */
+    public String getKey() {
+        return key(type, id);
+    }
+
+    public synchronized String getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    /**
+     * @return A copy of the element's attributes
+     */
+    public synchronized Map<String, String> getAttributes() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(attributes));
+    }
+
+    public synchronized void setAttribute(String name, String value) {
+        attributes.put(name, value);
+    }
+
+    public synchronized void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
+    /**
+     * Returns the index key for an element type and id
+     * @param type The element name
+     * @param id The id of the element, or null for elements without an id
+     * @return The key
+     */
+    public static String key(String type, String id) {
+        return id == null ? type : type + "[" + id + "]";
+    }
+
+    @Override
+    public String toString() {
+        return getKey();
+    }
+}
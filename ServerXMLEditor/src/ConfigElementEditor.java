@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Edits any config element in a server.xml file (executor, dataSource, connectionManager, ...), including
+ * elements nested inside other elements such as "dataSource>connectionManager".
+ *
+ * Lookups go through a ServerXMLIndex, which is updated in place after each edit. If the file is changed by
+ * anything else (the feature manager, an undo, the IntelliJ editor) the index is rebuilt the next time it's used.
+ *
+ * Edits take the ServerXMLWriter lock before the lock on this editor, the same order as a batch of edits
+ * inside a writer transaction, so the two can't deadlock.
+ */
+public class ConfigElementEditor {
+    private final ServerXMLWriter writer;
+    private ServerXMLIndex index = null;
+    private int indexedModificationCount = -1;
+
+    /**
+     * Creates an editor for a server.xml file and indexes it
+     * @param writer The writer for the server.xml file
+     * @throws IOException If the file could not be read or is not valid xml
+     */
+    public ConfigElementEditor(ServerXMLWriter writer) throws IOException {
+        this.writer = writer;
+        getIndex();
+    }
+
+    public File getFile() { return writer.getFile(); }
+
+    public ServerXMLWriter getWriter() { return this.writer; }
+
+    /**
+     * Returns the index of the config elements, rebuilding it first if the file was changed outside of this editor
+     * @return The index
+     * @throws IOException If the file could not be read or is not valid xml
+     */
+    public synchronized ServerXMLIndex getIndex() throws IOException {
+        int modificationCount = writer.getModificationCount();
+        if (index == null || modificationCount != indexedModificationCount) {
+            index = ServerXMLIndex.build(writer.getFile());
+            indexedModificationCount = modificationCount;
+        }
+        return index;
+    }
+
+    /**
+     * Throws away the index, used when server.xml was changed outside of the plugin
+     */
+    public synchronized void invalidate() {
+        index = null;
+    }
+
+    /**
+     * Sets an attribute on a config element, adding the element to server.xml if it isn't there
+     * @param type The element name, e.g. "executor"
+     * @param id The id of the element, or null to use the first element of this type
+     * @param name The attribute name
+     * @param value The attribute value
+     * @throws IOException If server.xml could not be read or written. The file is left unchanged.
+     */
+    public void setAttribute(String type, String id, String name, String value) throws IOException {
+        setAttributes(type, id, Collections.singletonMap(name, value));
+    }
+
+    /**
+     * Sets several attributes on a config element in a single write, adding the element to server.xml if it isn't there
+     * @param type The element name, e.g. "executor"
+     * @param id The id of the element, or null to use the first element of this type
+     * @param attributes The attribute names and values. A null value removes the attribute.
+     * @throws IOException If server.xml could not be read or written. The file is left unchanged.
+     */
+    public void setAttributes(String type, String id, Map<String, String> attributes) throws IOException {
+        updateElement(new ConfigElement(type, id, 0), attributes);
+    }
+
+    /**
+     * Sets several attributes on a config element in a single write
+     * @param element The element, as returned by the index
+     * @param attributes The attribute names and values. A null value removes the attribute.
+     * @throws IOException If server.xml could not be read or written. The file is left unchanged.
+     */
+    public void setAttributes(ConfigElement element, Map<String, String> attributes) throws IOException {
+        updateElement(element, attributes);
+    }
+
+    private void updateElement(ConfigElement target, Map<String, String> attributes) throws IOException {
+        String type = target.getType();
+        String id = target.getId();
+        ServerXMLIndex current;
+        ConfigElement indexed;
+        int modificationCount;
+
+        try {
+            Document doc = writer.begin();
+            modificationCount = writer.getModificationCount();
+            current = getIndex();
+            indexed = current.get(target);
+            int ordinal = indexed == null ? 0 : indexed.getOrdinal();
+            Element element = findElement(doc, type, id, ordinal);
+            if (element == null) {
+                element = createElement(doc, type, id);
+            }
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                if (attribute.getValue() == null) {
+                    element.removeAttribute(attribute.getKey());
+                }
+                else {
+                    element.setAttribute(attribute.getKey(), attribute.getValue());
+                }
+            }
+            writer.commit();
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+
+        // Update the index in place if this was the only change written
+        synchronized (this) {
+            // A new nested element goes under the first parent, which isn't always the last of its type in the file
+            boolean appended = indexed != null || !type.contains(ConfigElement.NESTED);
+            // Elements are indexed by id, so a changed id means the index has to be rebuilt
+            boolean idChanged = attributes.containsKey("id");
+            if (index == current && appended && !idChanged && writer.getModificationCount() == modificationCount + 1) {
+                if (indexed == null) {
+                    indexed = new ConfigElement(type, id, current.getAll(type).size());
+                    if (id != null) {
+                        indexed.setAttribute("id", id);
+                    }
+                    current.add(indexed);
+                }
+                for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                    if (attribute.getValue() == null) {
+                        indexed.removeAttribute(attribute.getKey());
+                    }
+                    else {
+                        indexed.setAttribute(attribute.getKey(), attribute.getValue());
+                    }
+                }
+                indexedModificationCount = modificationCount + 1;
+            }
+        }
+    }
+
+    /**
+     * Removes an attribute from a config element
+     * @param element The element, as returned by the index
+     * @param name The attribute name
+     * @throws IOException If server.xml could not be read or written. The file is left unchanged.
+     */
+    public void removeAttribute(ConfigElement element, String name) throws IOException {
+        setAttributes(element, Collections.<String, String>singletonMap(name, null));
+    }
+
+    /**
+     * Removes a config element from server.xml
+     * @param element The element, as returned by the index
+     * @throws IOException If server.xml could not be read or written. The file is left unchanged.
+     */
+    public void removeElement(ConfigElement element) throws IOException {
+        if (getIndex().get(element) == null) {
+            return;
+        }
+        ServerXMLIndex current;
+        int modificationCount;
+
+        try {
+            Document doc = writer.begin();
+            modificationCount = writer.getModificationCount();
+            current = getIndex();
+            ConfigElement indexed = current.get(element);
+            if (indexed != null) {
+                element = indexed;
+            }
+            Element domElement = findElement(doc, element.getType(), element.getId(), element.getOrdinal());
+            if (domElement != null) {
+                domElement.getParentNode().removeChild(domElement);
+            }
+            writer.commit();
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+
+        // Removing an element also removes the elements nested inside it, so then the index is rebuilt
+        synchronized (this) {
+            if (index == current && !current.hasNested(element.getType())
+                    && writer.getModificationCount() == modificationCount + 1) {
+                current.remove(element);
+                indexedModificationCount = modificationCount + 1;
+            }
+        }
+    }
+
+    /**
+     * Finds a config element in a server.xml document
+     * @param doc The server.xml document
+     * @param type The element type, e.g. "executor" or "dataSource>connectionManager"
+     * @param id The id of the element, or null to find it by position
+     * @param ordinal The position of the element among the elements of this type, used when id is null
+     * @return The element, or null if it isn't in the document
+     */
+    public static Element findElement(Document doc, String type, String id, int ordinal) {
+        int count = 0;
+        for (Element element : getElements(doc, type)) {
+            if (id != null) {
+                if (id.equals(element.getAttribute("id"))) {
+                    return element;
+                }
+            }
+            else if (count++ == ordinal) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns every element of a type, in document order
+     */
+    private static List<Element> getElements(Document doc, String type) {
+        List<Element> elements = Collections.singletonList(doc.getDocumentElement());
+        for (String name : type.split(ConfigElement.NESTED)) {
+            List<Element> children = new ArrayList<>();
+            for (Element parent : elements) {
+                for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    if (child.getNodeType() == Node.ELEMENT_NODE && child.getNodeName().equals(name)) {
+                        children.add((Element) child);
+                    }
+                }
+            }
+            elements = children;
+        }
+        return elements;
+    }
+
+    /**
+     * Adds a new config element to a server.xml document. A nested element is added to the first element of its
+     * parent type, which is created first if there isn't one.
+     * @param doc The server.xml document
+     * @param type The element type, e.g. "executor" or "dataSource>connectionManager"
+     * @param id The id of the element, or null to leave it without an id
+     * @return The new element
+     */
+    public static Element createElement(Document doc, String type, String id) {
+        int nested = type.lastIndexOf(ConfigElement.NESTED);
+        Element parent = nested == -1 ? doc.getDocumentElement()
+                : findOrCreateElement(doc, type.substring(0, nested), null);
+        Element element = doc.createElement(type.substring(nested + 1));
+        if (id != null) {
+            element.setAttribute("id", id);
+        }
+        parent.appendChild(element);
+        return element;
+    }
+
+    /**
+     * Finds a config element in a server.xml document, adding it if it isn't there
+     * @param doc The server.xml document
+     * @param type The element type
+     * @param id The id of the element, or null to use the first element of this type
+     * @return The element
+     */
+    public static Element findOrCreateElement(Document doc, String type, String id) {
+        Element element = findElement(doc, type, id, 0);
+        if (element == null) {
+            element = createElement(doc, type, id);
+        }
+        return element;
+    }
+}
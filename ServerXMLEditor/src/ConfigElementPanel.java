@@ -0,0 +1,347 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+import javax.swing.*;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Tool window panel that lists every config element in server.xml and lets the user add elements and edit
+ * their attributes. Edits and index rebuilds run as ServerXMLTasks, the list shows a snapshot of the index.
+ */
+public class ConfigElementPanel extends JPanel {
+    private final ServerXMLProjectService service;
+    private ConfigElementEditor configEditor = null;
+    private ConfigSchema schema = ConfigSchema.getDefault();
+    private final Runnable onChange;
+
+    // UI Components
+    private JComboBox typeBox = new JComboBox();
+    private JTextField idField = new JTextField(10);
+    private JButton findButton = new JButton("Find/Add");
+    private DefaultListModel elementListModel = new DefaultListModel();
+    private JList elementList = new JList(elementListModel);
+    private DefaultTableModel attributeModel = new DefaultTableModel(new String[] {"Attribute", "Value"}, 0);
+    private JTable attributeTable = new JTable(attributeModel);
+    private JComboBox attributeBox = new JComboBox();
+    private JTextField valueField = new JTextField(10);
+    private JButton setButton = new JButton("Set");
+    private JButton removeAttributeButton = new JButton("Remove Attribute");
+    private JButton removeElementButton = new JButton("Remove Element");
+
+    /**
+     * Creates the panel
+     * @param service The project service that runs the edits
+     * @param onChange Called after server.xml has been changed, so the IntelliJ editor can be refreshed
+     */
+    public ConfigElementPanel(ServerXMLProjectService service, Runnable onChange) {
+        super(new BorderLayout());
+        this.service = service;
+        this.onChange = onChange;
+
+        typeBox.setEditable(true);
+        attributeBox.setEditable(true);
+        for (String type : schema.getKnownTypes()) {
+            typeBox.addItem(type);
+        }
+        elementList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        attributeTable.setDefaultEditor(Object.class, null);
+        attributeTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+
+        JPanel findPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        findPanel.add(new JLabel("Element: "));
+        findPanel.add(typeBox);
+        findPanel.add(new JLabel("Id: "));
+        findPanel.add(idField);
+        findPanel.add(findButton);
+
+        JPanel editPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        editPanel.add(attributeBox);
+        editPanel.add(valueField);
+        editPanel.add(setButton);
+        editPanel.add(removeAttributeButton);
+        editPanel.add(removeElementButton);
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+                new JScrollPane(elementList), new JScrollPane(attributeTable));
+        add(findPanel, BorderLayout.NORTH);
+        add(splitPane, BorderLayout.CENTER);
+        add(editPanel, BorderLayout.SOUTH);
+        setEditingEnabled(false);
+
+        elementList.addListSelectionListener(new ListSelectionListener() {
+            @Override
+            public void valueChanged(ListSelectionEvent e) {
+                if (!e.getValueIsAdjusting()) {
+                    showAttributes(getSelectedElement());
+                }
+            }
+        });
+
+        attributeTable.getSelectionModel().addListSelectionListener(new ListSelectionListener() {
+            @Override
+            public void valueChanged(ListSelectionEvent e) {
+                int row = attributeTable.getSelectedRow();
+                if (row != -1) {
+                    attributeBox.setSelectedItem(attributeModel.getValueAt(row, 0));
+                    valueField.setText((String) attributeModel.getValueAt(row, 1));
+                }
+            }
+        });
+
+        findButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                // Select the element, adding it to server.xml if it isn't there
+                final String type = ((String) typeBox.getSelectedItem()).trim();
+                final String id = idField.getText().trim().isEmpty() ? null : idField.getText().trim();
+                if (type.isEmpty()) {
+                    return;
+                }
+                final ConfigElementEditor editor = configEditor;
+                service.submit(new ServerXMLTask<Boolean>() {
+                    @Override
+                    protected Boolean compute() throws IOException {
+                        if (editor.getIndex().get(type, id) != null) {
+                            return false;
+                        }
+                        editor.setAttributes(type, id, Collections.<String, String>emptyMap());
+                        return true;
+                    }
+
+                    @Override
+                    protected void onSuccess(Boolean added) {
+                        if (added) {
+                            onChange.run();
+                        }
+                        refresh(new ConfigElement(type, id, 0));
+                    }
+
+                    @Override
+                    protected void onError(IOException ex) {
+                        showError("Unable to add " + ConfigElement.key(type, id) + ": " + ex.getMessage());
+                    }
+                });
+            }
+        });
+
+        setButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                final ConfigElement element = getSelectedElement();
+                final String name = (String) attributeBox.getSelectedItem();
+                if (element == null || name == null || name.trim().isEmpty()) {
+                    return;
+                }
+                final Map<String, String> attributes = Collections.singletonMap(name.trim(), valueField.getText());
+                service.submit(new ElementEdit("Unable to set " + name, element) {
+                    @Override
+                    protected void edit(ConfigElementEditor editor) throws IOException {
+                        editor.setAttributes(element, attributes);
+                    }
+                });
+            }
+        });
+
+        removeAttributeButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                final ConfigElement element = getSelectedElement();
+                int row = attributeTable.getSelectedRow();
+                if (element == null || row == -1) {
+                    return;
+                }
+                final String name = (String) attributeModel.getValueAt(row, 0);
+                service.submit(new ElementEdit("Unable to remove " + name, element) {
+                    @Override
+                    protected void edit(ConfigElementEditor editor) throws IOException {
+                        editor.removeAttribute(element, name);
+                    }
+                });
+            }
+        });
+
+        removeElementButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                final ConfigElement element = getSelectedElement();
+                if (element == null) {
+                    return;
+                }
+                service.submit(new ElementEdit("Unable to remove " + element, null) {
+                    @Override
+                    protected void edit(ConfigElementEditor editor) throws IOException {
+                        editor.removeElement(element);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Sets the editor for the server.xml file that was loaded and lists its elements
+     * @param configEditor The editor for the loaded server.xml file
+     */
+    public void setEditor(ConfigElementEditor configEditor) {
+        this.configEditor = configEditor;
+        setEditingEnabled(configEditor != null);
+        refresh();
+    }
+
+    /**
+     * Sets the schema used to suggest element types and attributes
+     * @param schema The schema of the Liberty install that the loaded server.xml file belongs to
+     */
+    public void setSchema(ConfigSchema schema) {
+        this.schema = schema;
+        refresh();
+    }
+
+    /**
+     * Reloads the list of elements from the index
+     */
+    public void refresh() {
+        refresh(null);
+    }
+
+    /**
+     * Reloads the list of elements from a snapshot of the index, taken in the background
+     * @param select The element to select once the list is loaded, or null
+     */
+    private void refresh(final ConfigElement select) {
+        final ConfigElementEditor editor = configEditor;
+        if (editor == null) {
+            elementListModel.clear();
+            attributeModel.setRowCount(0);
+            return;
+        }
+        service.submit(new ServerXMLTask<ServerXMLIndex>() {
+            @Override
+            protected ServerXMLIndex compute() throws IOException {
+                return editor.getIndex().snapshot();
+            }
+
+            @Override
+            protected void onSuccess(ServerXMLIndex index) {
+                // Ignore the result if another server.xml was loaded in the meantime
+                if (editor == configEditor) {
+                    showIndex(index, select);
+                }
+            }
+
+            @Override
+            protected void onError(IOException e) {
+                showError("Unable to read " + editor.getFile().getName() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private void showIndex(ServerXMLIndex index, ConfigElement select) {
+        elementListModel.clear();
+        attributeModel.setRowCount(0);
+        for (ConfigElement element : index.getElements()) {
+            elementListModel.addElement(element);
+        }
+
+        // Offer the element types in this server.xml as well as the ones in the schema
+        TreeSet<String> types = new TreeSet<>(schema.getKnownTypes());
+        types.addAll(index.getTypes());
+        Object selected = typeBox.getSelectedItem();
+        typeBox.removeAllItems();
+        for (String type : types) {
+            typeBox.addItem(type);
+        }
+        typeBox.setSelectedItem(selected);
+
+        if (select != null) {
+            elementList.setSelectedValue(index.get(select), true);
+        }
+    }
+
+    private ConfigElement getSelectedElement() {
+        return (ConfigElement) elementList.getSelectedValue();
+    }
+
+    private void showAttributes(ConfigElement element) {
+        attributeModel.setRowCount(0);
+        attributeBox.removeAllItems();
+        valueField.setText("");
+        if (element == null) {
+            return;
+        }
+
+        for (Map.Entry<String, String> attribute : element.getAttributes().entrySet()) {
+            attributeModel.addRow(new Object[] {attribute.getKey(), attribute.getValue()});
+        }
+        for (String name : schema.getAttributes(element.getType())) {
+            attributeBox.addItem(name);
+        }
+    }
+
+    private void setEditingEnabled(boolean enabled) {
+        findButton.setEnabled(enabled);
+        setButton.setEnabled(enabled);
+        removeAttributeButton.setEnabled(enabled);
+        removeElementButton.setEnabled(enabled);
+    }
+
+    private void showError(String message) {
+        JOptionPane.showMessageDialog(this, message, "Error", JOptionPane.ERROR_MESSAGE);
+    }
+
+    /**
+     * An edit made from this panel. Afterwards the IntelliJ editor and the list of elements are refreshed.
+     */
+    private abstract class ElementEdit extends ServerXMLTask<Void> {
+        private final ConfigElementEditor editor = configEditor;
+        private final String failure;
+        private final ConfigElement select;
+
+        /**
+         * @param failure The start of the error message if the edit fails
+         * @param select The element to select after the edit, or null
+         */
+        ElementEdit(String failure, ConfigElement select) {
+            this.failure = failure;
+            this.select = select;
+            service.saveDocument(editor.getFile());
+        }
+
+        protected abstract void edit(ConfigElementEditor editor) throws IOException;
+
+        @Override
+        protected Void compute() throws IOException {
+            edit(editor);
+            return null;
+        }
+
+        @Override
+        protected void onSuccess(Void result) {
+            onChange.run();
+            refresh(select);
+        }
+
+        @Override
+        protected void onError(IOException e) {
+            showError(failure + ": " + e.getMessage());
+            refresh(select);
+        }
+    }
+}
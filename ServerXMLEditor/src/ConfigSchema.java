@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The Liberty config elements that the editor knows about, with their attributes.
+ *
+ * The schema comes from the server.xsd that ws-schemagen.jar generates for a Liberty install, so it covers
+ * every element of the installed features. Until that has been loaded (or if it can't be generated) a small
+ * built in list of the commonly tuned elements is used instead. Elements that aren't in the schema can still
+ * be edited, they just don't get attribute suggestions.
+ */
+public class ConfigSchema {
+    private static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
+    private static final int MAX_NESTING = 3;
+    private static final ConfigSchema defaultSchema = createDefault();
+
+    // Keyed by element type, e.g. "dataSource" or "dataSource>connectionManager"
+    private final Map<String, List<String>> attributes;
+    private final Set<String> topLevelTypes = new LinkedHashSet<>();
+
+    private ConfigSchema(Map<String, List<String>> attributes) {
+        this.attributes = attributes;
+        for (String type : attributes.keySet()) {
+            if (!type.contains(ConfigElement.NESTED)) {
+                topLevelTypes.add(type);
+            }
+        }
+    }
+
+    /**
+     * @return The built in schema, which only lists the commonly tuned elements and attributes
+     */
+    public static ConfigSchema getDefault() {
+        return defaultSchema;
+    }
+
+    private static ConfigSchema createDefault() {
+        Map<String, List<String>> attributes = new LinkedHashMap<>();
+        attributes.put("featureManager", Arrays.asList("onError"));
+        attributes.put("httpEndpoint", Arrays.asList("host", "httpPort", "httpsPort", "onError",
+                "httpOptionsRef", "tcpOptionsRef", "sslOptionsRef", "accessLoggingRef"));
+        attributes.put("httpOptions", Arrays.asList("keepAliveEnabled", "maxKeepAliveRequests", "persistTimeout",
+                "readTimeout", "writeTimeout", "removeServerHeader"));
+        attributes.put("tcpOptions", Arrays.asList("inactivityTimeout", "soReuseAddr", "maxOpenConnections"));
+        attributes.put("executor", Arrays.asList("coreThreads", "maxThreads", "keepAlive", "stealPolicy",
+                "rejectedWorkPolicy"));
+        attributes.put("dataSource", Arrays.asList("jndiName", "jdbcDriverRef", "connectionManagerRef", "type",
+                "statementCacheSize", "isolationLevel", "transactional"));
+        attributes.put("connectionManager", Arrays.asList("maxPoolSize", "minPoolSize", "connectionTimeout",
+                "maxIdleTime", "reapTime", "agedTimeout", "purgePolicy", "numConnectionsPerThreadLocal"));
+        attributes.put("logging", Arrays.asList("traceSpecification", "traceFileName", "maxFileSize", "maxFiles",
+                "consoleLogLevel", "messageFileName"));
+        attributes.put("applicationMonitor", Arrays.asList("updateTrigger", "pollingRate", "dropinsEnabled"));
+        attributes.put("config", Arrays.asList("monitorInterval", "updateTrigger"));
+        return new ConfigSchema(attributes);
+    }
+
+    /**
+     * Loads the schema from a server.xsd file generated by ws-schemagen.jar
+     * @param xsdFile The server.xsd file
+     * @return The schema
+     * @throws IOException If the file could not be read or doesn't define the server element
+     */
+    public static ConfigSchema load(File xsdFile) throws IOException {
+        Document xsd;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            xsd = factory.newDocumentBuilder().parse(xsdFile);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Unable to read " + xsdFile.getName(), e);
+        }
+
+        Map<String, Element> complexTypes = new HashMap<>();
+        Element server = null;
+        for (Node child = xsd.getDocumentElement().getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (isXsd(child, "complexType")) {
+                complexTypes.put(((Element) child).getAttribute("name"), (Element) child);
+            }
+            else if (isXsd(child, "element") && ((Element) child).getAttribute("name").equals("server")) {
+                server = (Element) child;
+            }
+        }
+        if (server == null) {
+            throw new IOException(xsdFile.getName() + " doesn't define the server element");
+        }
+
+        Map<String, List<String>> attributes = new LinkedHashMap<>();
+        for (Element element : getChildElements(getComplexType(server, complexTypes), complexTypes)) {
+            addElement(element, null, complexTypes, new ArrayDeque<String>(), attributes);
+        }
+        return new ConfigSchema(attributes);
+    }
+
+    /**
+     * Adds an element declaration and the elements that can be nested inside it
+     */
+    private static void addElement(Element declaration, String parentType, Map<String, Element> complexTypes,
+                                   Deque<String> openTypes, Map<String, List<String>> attributes) {
+        String name = declaration.getAttribute("name");
+        String type = parentType == null ? name : parentType + ConfigElement.NESTED + name;
+        Element complexType = getComplexType(declaration, complexTypes);
+        if (complexType == null || attributes.containsKey(type)) {
+            return;
+        }
+
+        // Some types can be nested inside themselves, only follow each type once on the way down
+        String typeName = declaration.getAttribute("type");
+        if (openTypes.size() >= MAX_NESTING || (!typeName.isEmpty() && openTypes.contains(typeName))) {
+            return;
+        }
+        openTypes.push(typeName);
+
+        List<String> names = new ArrayList<>();
+        collect(complexType, complexTypes, names, null, new LinkedHashSet<String>());
+        attributes.put(type, names);
+        for (Element child : getChildElements(complexType, complexTypes)) {
+            addElement(child, type, complexTypes, openTypes, attributes);
+        }
+        openTypes.pop();
+    }
+
+    private static List<Element> getChildElements(Element complexType, Map<String, Element> complexTypes) {
+        List<Element> children = new ArrayList<>();
+        if (complexType != null) {
+            collect(complexType, complexTypes, null, children, new LinkedHashSet<String>());
+        }
+        return children;
+    }
+
+    /**
+     * Collects the attribute names and nested element declarations of a complex type, including the ones it
+     * inherits from its base type. Doesn't look inside the nested element declarations themselves.
+     */
+    private static void collect(Element node, Map<String, Element> complexTypes, List<String> attributeNames,
+                                List<Element> elements, Set<String> visitedBases) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() != Node.ELEMENT_NODE || !XSD_NAMESPACE.equals(child.getNamespaceURI())) {
+                continue;
+            }
+            Element xsdElement = (Element) child;
+            String localName = xsdElement.getLocalName();
+            if (localName.equals("annotation")) {
+                continue;
+            }
+            if (localName.equals("attribute")) {
+                if (attributeNames != null && xsdElement.hasAttribute("name")) {
+                    attributeNames.add(xsdElement.getAttribute("name"));
+                }
+            }
+            else if (localName.equals("element")) {
+                if (elements != null && xsdElement.hasAttribute("name")) {
+                    elements.add(xsdElement);
+                }
+            }
+            else {
+                if (localName.equals("extension")) {
+                    Element base = complexTypes.get(xsdElement.getAttribute("base"));
+                    if (base != null && visitedBases.add(xsdElement.getAttribute("base"))) {
+                        collect(base, complexTypes, attributeNames, elements, visitedBases);
+                    }
+                }
+                collect(xsdElement, complexTypes, attributeNames, elements, visitedBases);
+            }
+        }
+    }
+
+    /**
+     * Returns the complex type of an element declaration, either named by its type attribute or declared inline
+     */
+    private static Element getComplexType(Element declaration, Map<String, Element> complexTypes) {
+        if (declaration.hasAttribute("type")) {
+            return complexTypes.get(declaration.getAttribute("type"));
+        }
+        for (Node child = declaration.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (isXsd(child, "complexType")) {
+                return (Element) child;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isXsd(Node node, String localName) {
+        return node.getNodeType() == Node.ELEMENT_NODE && XSD_NAMESPACE.equals(node.getNamespaceURI())
+                && localName.equals(node.getLocalName());
+    }
+
+    /**
+     * @return The top level element types in the schema
+     */
+    public Set<String> getKnownTypes() {
+        return Collections.unmodifiableSet(topLevelTypes);
+    }
+
+    /**
+     * Returns the attributes of an element. Nested elements that the schema doesn't list under their parent
+     * are looked up by their name, e.g. a "dataSource>connectionManager" gets the attributes of a connectionManager.
+     * @param type The element type, e.g. "executor" or "dataSource>connectionManager"
+     * @return The attributes of the element, or an empty list if the element isn't known
+     */
+    public List<String> getAttributes(String type) {
+        List<String> typeAttributes = attributes.get(type);
+        if (typeAttributes == null) {
+            typeAttributes = attributes.get(type.substring(type.lastIndexOf(ConfigElement.NESTED) + 1));
+        }
+        if (typeAttributes == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(typeAttributes);
+    }
+}
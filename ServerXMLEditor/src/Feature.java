@@ -15,26 +15,46 @@
  *******************************************************************************/
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by John Collier & Logan Kember on 5/31/2016.
  * Last updated: 6/2/2016
+ *
+ * A feature in the Liberty feature catalog. The features.xml document isn't kept once the catalog is loaded, only
+ * the text each feature needs. Which features enable this one, and the lists shown in the UI, are worked out the
+ * first time they're asked for, so loading the catalog doesn't build the details of hundreds of features that
+ * are never selected.
  */
 public class Feature {
-    private String featureName;
-    private String name;
-    private String description;
-    private ArrayList<String> enables = new ArrayList<>();
-    private ArrayList<String> enabledBy = new ArrayList<>();
+    private final String featureName;
+    private final String name;
+    private final String description;
+    private final List<String> enablesNames;
+    private final Map<String, Feature> catalog;
+    // Worked out the first time they're asked for, guarded by the catalog
+    private List<String> enables = null;
+    private List<String> enabledBy = null;
+    private String enablesText = null;
+    private String enabledByText = null;
 
     /**
-     * Creates a feature object with the given name and description
+     * Creates a feature from its entry in features.xml
      * @param featureName The name of the feature
+     * @param name The display name of the feature
      * @param description The description of the feature
+     * @param enablesNames The features that this feature enables, as listed in features.xml
+     * @param catalog Every feature in the catalog by name, used to work out which features enable this one
      */
-    public Feature(String featureName, String description) {
+    public Feature(String featureName, String name, String description, List<String> enablesNames,
+                   Map<String, Feature> catalog) {
         this.featureName = featureName;
+        this.name = name;
         this.description = description;
+        this.enablesNames = enablesNames;
+        this.catalog = catalog;
     }
 
     public String getFeatureName() {
@@ -61,35 +81,58 @@ public class Feature {
         return java.util.Objects.hashCode(featureName);
     }
 
-    public void addEnables(String enables) {
-        this.enables.add(enables);
-    }
-
-    public void addEnabledBy(String enabledBy) {
-        this.enabledBy.add(enabledBy);
+    /**
+     * @return The installed features that this feature enables
+     */
+    public List<String> getEnables() {
+        synchronized (catalog) {
+            if (enables == null) {
+                // The feature list can refer to features that aren't installed, skip them
+                List<String> features = new ArrayList<>();
+                for (String feature : enablesNames) {
+                    if (catalog.containsKey(feature)) {
+                        features.add(feature);
+                    }
+                }
+                enables = Collections.unmodifiableList(features);
+            }
+            return enables;
+        }
     }
 
-    public void setName(String name) {
-        this.name = name;
+    /**
+     * @return The installed features that enable this feature
+     */
+    public List<String> getEnabledBy() {
+        synchronized (catalog) {
+            if (enabledBy == null) {
+                List<String> features = new ArrayList<>();
+                for (Feature feature : catalog.values()) {
+                    if (feature.getEnables().contains(featureName)) {
+                        features.add(feature.getFeatureName());
+                    }
+                }
+                enabledBy = Collections.unmodifiableList(features);
+            }
+            return enabledBy;
+        }
     }
 
-    public ArrayList<String> getEnabledBy() { return this.enabledBy; }
-
-    public ArrayList<String> getEnables() { return this.enables; }
-
     /**
      * Retyrbs a string that shows all of the features that are enabled by this feature
      * @return a String representation of the features stored in the "enables" ArrayList
      */
     public String enablesToString() {
+        List<String> enables = getEnables();
         if (enables.size() == 0) {
             return "Does not enable any other features.";
         }
-        String output = enables.get(0);
-        for (int i=1; i<enables.size(); i++) {
-            output = output.concat(", " + enables.get(i));
+        synchronized (catalog) {
+            if (enablesText == null) {
+                enablesText = join(enables);
+            }
+            return enablesText;
         }
-        return output;
     }
 
     /**
@@ -97,13 +140,23 @@ public class Feature {
      * @return a String representation of the features that are stored in the "enabledBy" ArrayList
      */
     public String enabledByToString() {
+        List<String> enabledBy = getEnabledBy();
         if(enabledBy.size() == 0) {
             return "Not enabled by any other features.";
         }
-        String output = enabledBy.get(0);
-        for (int i=1; i<enabledBy.size();i++) {
-            output = output.concat(", "+enabledBy.get(i));
+        synchronized (catalog) {
+            if (enabledByText == null) {
+                enabledByText = join(enabledBy);
+            }
+            return enabledByText;
+        }
+    }
+
+    private static String join(List<String> features) {
+        StringBuilder output = new StringBuilder(features.get(0));
+        for (int i=1; i<features.size(); i++) {
+            output.append(", ").append(features.get(i));
         }
-        return output;
+        return output.toString();
     }
 }
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+import com.intellij.openapi.components.ServiceManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Application level service that owns the Liberty feature catalogs and config schemas.
+ *
+ * A catalog or schema is loaded once per Liberty install and shared, read only, by every project that uses that
+ * install. Each install is loaded at most once at a time, and loading one install never blocks lookups for another.
+ * Installing or removing features changes the modification time of the install's feature folders, which throws
+ * away the cached catalog and schema so they are loaded again.
+ */
+public class FeatureCatalogService {
+    private final ConcurrentMap<File, Future<List<Feature>>> catalogs = new ConcurrentHashMap<>();
+    private final ConcurrentMap<File, Future<ConfigSchema>> schemas = new ConcurrentHashMap<>();
+    private final ConcurrentMap<File, Long> featureFolderTimes = new ConcurrentHashMap<>();
+
+    public static FeatureCatalogService getInstance() {
+        return ServiceManager.getService(FeatureCatalogService.class);
+    }
+
+    /**
+     * Returns the feature catalog for a Liberty install, loading it the first time it's asked for.
+     * This can take a while, so call it from a background thread.
+     * @param wlpFolder The Liberty install (wlp) folder
+     * @return The features, which must not be modified
+     * @throws IOException If the catalog could not be generated or read
+     */
+    public List<Feature> getCatalog(File wlpFolder) throws IOException {
+        final File key = wlpFolder.getAbsoluteFile();
+        invalidateIfChanged(key);
+        return get(catalogs, key, "features", new Callable<List<Feature>>() {
+            @Override
+            public List<Feature> call() throws IOException {
+                return loadCatalog(key);
+            }
+        });
+    }
+
+    /**
+     * Returns the config schema for a Liberty install, generating it the first time it's asked for.
+     * This can take a while, so call it from a background thread.
+     * @param wlpFolder The Liberty install (wlp) folder
+     * @return The schema
+     * @throws IOException If the schema could not be generated or read
+     */
+    public ConfigSchema getSchema(File wlpFolder) throws IOException {
+        final File key = wlpFolder.getAbsoluteFile();
+        invalidateIfChanged(key);
+        return get(schemas, key, "config schema", new Callable<ConfigSchema>() {
+            @Override
+            public ConfigSchema call() throws IOException {
+                return loadSchema(key);
+            }
+        });
+    }
+
+    /**
+     * Returns the cached value for an install, loading it on this thread if nobody else is loading it already
+     */
+    private static <T> T get(ConcurrentMap<File, Future<T>> cache, File key, String what, Callable<T> loader)
+            throws IOException {
+        Future<T> value = cache.get(key);
+        if (value == null) {
+            FutureTask<T> task = new FutureTask<>(loader);
+            value = cache.putIfAbsent(key, task);
+            if (value == null) {
+                value = task;
+                task.run();
+            }
+        }
+        try {
+            return value.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading the " + what + " for " + key, e);
+        } catch (ExecutionException e) {
+            // Don't cache failures, so the next request tries again
+            cache.remove(key, value);
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Unable to load the " + what + " for " + key, e.getCause());
+        }
+    }
+
+    /**
+     * Throws away the cached catalog and schema for a Liberty install, so they are loaded again the next time.
+     * Projects that already have the old catalog keep using it until they ask for it again.
+     * @param wlpFolder The Liberty install (wlp) folder
+     */
+    public void invalidate(File wlpFolder) {
+        catalogs.remove(wlpFolder.getAbsoluteFile());
+        schemas.remove(wlpFolder.getAbsoluteFile());
+    }
+
+    /**
+     * Throws away the cached catalog and schema if features have been added to or removed from the install
+     * since they were loaded
+     */
+    private void invalidateIfChanged(File wlpFolder) {
+        long modified = Math.max(
+                new File(wlpFolder, "lib" + File.separator + "features").lastModified(),
+                new File(wlpFolder, "usr" + File.separator + "extension" + File.separator + "lib"
+                        + File.separator + "features").lastModified());
+        Long loaded = featureFolderTimes.put(wlpFolder, modified);
+        if (loaded != null && loaded != modified) {
+            invalidate(wlpFolder);
+        }
+    }
+
+    /**
+     * Generates features.xml with ws-featurelist.jar and loads the features from it
+     */
+    private static List<Feature> loadCatalog(File wlpFolder) throws IOException {
+        File featureXml = new File(wlpFolder, "features.xml");
+        runTool(wlpFolder, "ws-featurelist.jar", featureXml.getPath());
+        return Collections.unmodifiableList(ServerXMLFeatureManager.loadAllFeatures(featureXml));
+    }
+
+    /**
+     * Generates server.xsd with ws-schemagen.jar and loads the schema from it
+     */
+    private static ConfigSchema loadSchema(File wlpFolder) throws IOException {
+        File schemaXsd = new File(wlpFolder, "server.xsd");
+        runTool(wlpFolder, "ws-schemagen.jar", "--schemaVersion=1.1", "--outputVersion=2", schemaXsd.getPath());
+        return ConfigSchema.load(schemaXsd);
+    }
+
+    /**
+     * Runs one of the jars in wlp/bin/tools in a separate system process, and waits for it so its output is complete
+     */
+    private static void runTool(File wlpFolder, String jarName, String... args) throws IOException {
+        File jar = new File(wlpFolder, "bin" + File.separator + "tools" + File.separator + jarName);
+        List<String> command = new ArrayList<>(Arrays.asList("java", "-jar", jar.getPath()));
+        command.addAll(Arrays.asList(args));
+
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try {
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new IOException(jarName + " failed with exit code " + exitCode);
+            }
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running " + jarName, e);
+        }
+    }
+}
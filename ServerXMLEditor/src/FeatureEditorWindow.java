@@ -0,0 +1,495 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+
+import java.awt.event.*;
+import java.io.*;
+import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Created by John Collier and Logan Kember on 5/26/2016.
+ *
+ * The Server.xml Editor tool window for a single project. The server.xml documents and the feature catalog
+ * are owned by the ServerXMLProjectService and FeatureCatalogService, this class only holds the UI state.
+ */
+public class FeatureEditorWindow {
+    private static final Logger LOG = Logger.getInstance(FeatureEditorWindow.class);
+    private static final String HTML_TAG =
+            "(?i)</?(p|br|b|i|u|em|strong|code|tt|pre|span|div|a|ul|ol|li|h[1-6])(\\s[^<>]*)?/?>";
+
+    private File xmlFile;
+    private Editor editor = null;
+    private Project project = null;
+    private ServerXMLProjectService service = null;
+    private ServerXMLDocumentManager docManager = null;
+
+    // UI Components
+    private JList list;
+    private FeatureTableModel tableModel = new FeatureTableModel();
+    private JTable table = new JTable();
+    private ListSelectionModel lsm;
+    private JScrollPane tableScroll;
+    private JPanel myPanel1;
+    private JButton addButton;
+    private JButton myLoadServerButton;
+    private JTextArea descriptionText;
+    private JTextArea enablesText;
+    private JTextArea enabledByText;
+    private JButton removeButton;
+    private JButton undoButton;
+    private JComboBox onError;
+    private ToolWindow myToolWindow;
+    private JFileChooser xmlFileChooser;
+    private ConfigElementPanel configPanel;
+    private TuningAdvisorPanel tuningPanel;
+
+    /**
+     * Creates the tool window's contents for a project
+     * @param project The intellij project that's being worked on.
+     * @param toolWindow The tool window that is being created
+     */
+    public FeatureEditorWindow(Project project, ToolWindow toolWindow)  {
+        this.project = project;
+        this.service = ServerXMLProjectService.getInstance(project);
+        this.myToolWindow = toolWindow;
+
+        // Set up the UI features for the feature editor form
+        xmlFileChooser = new JFileChooser();
+        xmlFileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+        xmlFileChooser.setDialogTitle("Open server.xml file");
+        FileNameExtensionFilter xmlFilter = new FileNameExtensionFilter("xml files (*.xml)", "xml");
+        xmlFileChooser.setFileFilter(xmlFilter);
+        tableScroll.getViewport().add(table);
+        lsm = table.getSelectionModel();
+        table.setDefaultEditor(Object.class, null);
+        Runnable onChange = new Runnable() {
+            @Override
+            public void run() {
+                refreshEditor();
+            }
+        };
+        configPanel = new ConfigElementPanel(service, onChange);
+        tuningPanel = new TuningAdvisorPanel(service, onChange);
+        descriptionText.setText("");
+        enablesText.setText("");
+        enabledByText.setText("");
+
+        // Load the editor object (so we can access it later)
+        editor = FileEditorManager.getInstance(project).getSelectedTextEditor();
+
+        myLoadServerButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent event) {
+                int returnval = xmlFileChooser.showOpenDialog(myPanel1);
+
+                // Attempt to load the file that was chosen by the user
+                if (returnval == JFileChooser.APPROVE_OPTION) {
+                    xmlFile = xmlFileChooser.getSelectedFile();
+                    if (xmlFile.getName().substring(xmlFile.getName().length()-4).equals(".xml")) {
+                        // enable parts of the UI that were disabled because the server.xml wasn't loaded
+                        addButton.setEnabled(true);
+                        removeButton.setEnabled(true);
+                        onError.setEnabled(true);
+                        table.setModel(tableModel);
+                        table.setEnabled(true);
+
+                        // Load the features into the combo box
+                        loadTableFeatures();
+
+                        // Set the editor
+                        docManager = service.getDocumentManager(xmlFile, editor);
+
+                        // Index the config elements in the background so they can be edited in the Config Elements
+                        // and Tuning tabs
+                        configPanel.setEditor(null);
+                        tuningPanel.setEditor(null);
+                        final File loadedXmlFile = xmlFile;
+                        service.submit(new ServerXMLTask<ConfigElementEditor>() {
+                            @Override
+                            protected ConfigElementEditor compute() throws IOException {
+                                return service.getConfigEditor(loadedXmlFile);
+                            }
+
+                            @Override
+                            protected void onSuccess(ConfigElementEditor configEditor) {
+                                if (loadedXmlFile.equals(xmlFile)) {
+                                    configPanel.setEditor(configEditor);
+                                    tuningPanel.setEditor(configEditor);
+                                    loadSchema();
+                                }
+                            }
+
+                            @Override
+                            protected void onError(IOException e) {
+                                showError("Unable to read " + loadedXmlFile.getName() + ": " + e.getMessage());
+                            }
+                        });
+                    }
+                    else {
+                        JFrame frame = new JFrame();
+                        JOptionPane.showMessageDialog(frame, "You must select an .xml file.", "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }
+
+        });
+
+        table.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                super.keyPressed(e);
+                getTableSelection();
+            }
+        });
+
+        table.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyReleased(KeyEvent e) {
+                super.keyReleased(e);
+                getTableSelection();
+            }
+        });
+
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                super.mouseReleased(e);
+                getTableSelection();
+            }
+        });
+
+        addButton.addActionListener(new ActionListener() {
+            // Add the selected feature into server.xml
+            public void actionPerformed(ActionEvent e) {
+                if (xmlFile == null) {
+                    // A server.xml file must be selected first
+                    JFrame frame = new JFrame();
+                    JOptionPane.showMessageDialog(frame, "You must select an .xml file.", "Error", JOptionPane.ERROR_MESSAGE);
+                }
+                else {
+                    int selection[] = table.getSelectedRows();
+                    final ArrayList<String> features = new ArrayList<>();
+                    for (int i=0; i<selection.length; i++) {
+                        features.add((String)table.getValueAt(selection[i], 0));
+                    }
+                    service.submit(new FeatureEdit("Unable to add the selected features") {
+                        @Override
+                        protected void edit(ServerXMLWriter writer) throws IOException {
+                            ServerXMLFeatureManager.addNewFeatures(features, writer);
+                        }
+                    });
+                }
+
+            }
+        });
+
+        onError.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                // Update the server.xml file for the new "On Error" selection
+                if (xmlFile == null) {
+                    return;
+                }
+                final String errorText = (String) onError.getSelectedItem();
+                service.submit(new FeatureEdit("Unable to set onError") {
+                    @Override
+                    protected void edit(ServerXMLWriter writer) throws IOException {
+                        ServerXMLFeatureManager.addOnError(errorText, writer);
+                    }
+                });
+            }
+        });
+
+
+        removeButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                // Load the xml document
+                int selection[] = table.getSelectedRows();
+                final ArrayList<String> features = new ArrayList<>();
+                for (int i=0; i<selection.length; i++) {
+                    features.add((String)table.getValueAt(selection[i], 0));
+                }
+                service.submit(new FeatureEdit("Unable to remove the selected features") {
+                    @Override
+                    protected void edit(ServerXMLWriter writer) throws IOException {
+                        ServerXMLFeatureManager.removeFeatures(features, writer);
+                    }
+                });
+            }
+        });
+
+        undoButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                // Restore server.xml to the version before the last change
+                service.submit(new FeatureEdit("Unable to undo the last change") {
+                    @Override
+                    protected void edit(ServerXMLWriter writer) throws IOException {
+                        writer.rollback();
+                    }
+
+                    @Override
+                    protected void onSuccess(Void result) {
+                        configPanel.refresh();
+                        tuningPanel.refresh();
+                        super.onSuccess(result);
+                    }
+                });
+            }
+        });
+    }
+
+    public JPanel getFeaturePanel() { return this.myPanel1; }
+
+    public ConfigElementPanel getConfigPanel() { return this.configPanel; }
+
+    public TuningAdvisorPanel getTuningPanel() { return this.tuningPanel; }
+
+    /**
+     * Loads the Liberty features into the table. The catalog is generated from wlp/lib/features on a background
+     * thread the first time, then shared with every other project using the same Liberty install.
+     */
+    private void loadTableFeatures() {
+        final File loadedXmlFile = xmlFile;
+        final File wlpFolder = getWlpFolder(loadedXmlFile);
+        if (wlpFolder == null) {
+            showError("Unable to find the Liberty install for " + loadedXmlFile.getPath());
+            return;
+        }
+
+        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final List<Feature> features = FeatureCatalogService.getInstance().getCatalog(wlpFolder);
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            // Ignore the result if another server.xml was loaded in the meantime
+                            if (loadedXmlFile.equals(xmlFile)) {
+                                tableModel.setFeatures(features);
+                            }
+                        }
+                    });
+                }
+                catch (final IOException e) {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            showError("Unable to load the Liberty features: " + e.getMessage());
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Loads the config schema of the Liberty install into the Config Elements tab. Like the feature catalog it is
+     * generated on a background thread the first time. Until then, or if it can't be generated, the tab uses the
+     * built in schema.
+     */
+    private void loadSchema() {
+        final File loadedXmlFile = xmlFile;
+        final File wlpFolder = getWlpFolder(loadedXmlFile);
+        if (wlpFolder == null) {
+            return;
+        }
+
+        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final ConfigSchema schema = FeatureCatalogService.getInstance().getSchema(wlpFolder);
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (loadedXmlFile.equals(xmlFile)) {
+                                configPanel.setSchema(schema);
+                            }
+                        }
+                    });
+                }
+                catch (IOException e) {
+                    // Keep the built in schema
+                    LOG.warn("Unable to load the config schema for " + wlpFolder + ", using the built in schema", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the Liberty install folder for a server.xml file in wlp/usr/servers/[server name]/server.xml
+     * @param xmlFile The server.xml file
+     * @return The wlp folder, or null if the server.xml file isn't in a Liberty install
+     */
+    private static File getWlpFolder(File xmlFile) {
+        File folder = xmlFile.getAbsoluteFile();
+        for (int i = 0; i < 4 && folder != null; i++) {
+            folder = folder.getParentFile();
+        }
+        return folder;
+    }
+
+    /**
+     * @return The writer for the loaded server.xml file
+     */
+    private ServerXMLWriter getWriter() {
+        return ServerXMLProjectService.getInstance(project).getWriter(xmlFile);
+    }
+
+    /**
+     * Refreshes the current editor in IntelliJ, once the edits that are already queued have been written
+     */
+    private void refreshEditor() {
+        if (xmlFile == null) {
+            return;
+        }
+        final ServerXMLWriter writer = getWriter();
+        service.submit(new ServerXMLTask<Boolean>() {
+            @Override
+            protected Boolean compute() {
+                return writer.canRollback();
+            }
+
+            @Override
+            protected void onSuccess(Boolean canRollback) {
+                undoButton.setEnabled(canRollback);
+                if (docManager != null) {
+                    docManager.loadFile(xmlFile);
+                    docManager.writeChanges(xmlFile);
+                }
+                myToolWindow.activate(null, true);
+            }
+
+            @Override
+            protected void onError(IOException e) {
+                showError(e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * A change to the loaded server.xml file made from the Features tab. Afterwards the IntelliJ editor is refreshed.
+     */
+    private abstract class FeatureEdit extends ServerXMLTask<Void> {
+        private final ServerXMLWriter writer = getWriter();
+        private final String failure;
+
+        /**
+         * @param failure The start of the error message if the edit fails
+         */
+        FeatureEdit(String failure) {
+            this.failure = failure;
+            service.saveDocument(xmlFile);
+        }
+
+        protected abstract void edit(ServerXMLWriter writer) throws IOException;
+
+        @Override
+        protected Void compute() throws IOException {
+            edit(writer);
+            return null;
+        }
+
+        @Override
+        protected void onSuccess(Void result) {
+            refreshEditor();
+        }
+
+        @Override
+        protected void onError(IOException e) {
+            showError(failure + ": " + e.getMessage());
+            refreshEditor();
+        }
+    }
+
+    /**
+     * Shows an error dialog with the given message
+     * @param message The error message
+     */
+    private void showError(String message) {
+        JOptionPane.showMessageDialog(myPanel1, message, "Error", JOptionPane.ERROR_MESSAGE);
+    }
+
+    private void getTableSelection() {
+        if (tableModel.getRowCount() >= 1) {
+
+            int selection[] = table.getSelectedRows();  //Getting all rows selected by the user
+            // If one feature is selected
+            if (selection.length==1) {
+                Feature feature = tableModel.getFeatureAt(table.convertRowIndexToModel(selection[0]));
+                setDetailText(descriptionText, feature.getDescription());
+                setDetailText(enablesText, feature.enablesToString());
+                setDetailText(enabledByText, feature.enabledByToString());
+            }
+            else if (selection.length==0){
+                descriptionText.setText("");
+                enablesText.setText("");
+                enabledByText.setText("");
+            }
+            // If multiple features are selected
+            else {
+                descriptionText.setText("Multiple features selected.");
+                Set<String> enables = new HashSet<>();          //Using HashSets to avoid duplicates
+                Set<String> enabledBy = new HashSet<>();
+                for (int i=0; i<selection.length; i++) {
+                    Feature feature = tableModel.getFeatureAt(table.convertRowIndexToModel(selection[i]));
+                    enabledBy.addAll(feature.getEnabledBy());
+                    enables.addAll(feature.getEnables());
+                }
+                if (!enables.isEmpty()) enablesText.setText(enables.toString());
+                else enablesText.setText("Does not enable any other features.");
+                if (!enabledBy.isEmpty()) enabledByText.setText(enabledBy.toString());
+                else enabledByText.setText("Is not enabled by any other features.");
+            }
+            descriptionText.setCaretPosition(0);
+            enablesText.setCaretPosition(0);
+            enabledByText.setCaretPosition(0);
+        }
+    }
+
+    /**
+     * Shows text in one of the detail panes. The panes are plain text areas, which are much cheaper to lay out
+     * than HTML editor panes, so any simple HTML markup in the feature description is converted to plain text.
+     * @param textArea The detail pane
+     * @param text Plain text or simple HTML. Only known HTML tags are removed, so text like "a < b" is kept.
+     */
+    private static void setDetailText(JTextArea textArea, String text) {
+        if (text == null) {
+            text = "";
+        }
+        else if (text.indexOf('<') != -1 || text.indexOf('&') != -1) {
+            text = text.replaceAll("(?i)<br\\s*/?>|</p>", "\n")
+                    .replaceAll(HTML_TAG, "")
+                    .replace("&lt;", "<")
+                    .replace("&gt;", ">")
+                    .replace("&quot;", "\"")
+                    .replace("&nbsp;", " ")
+                    .replace("&amp;", "&");
+        }
+        textArea.setText(text.trim());
+    }
+}
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+import javax.swing.table.AbstractTableModel;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Table model that reads straight from the feature catalog instead of copying it into rows.
+ * JTable only asks for the cells it paints, so only the visible rows are ever looked at.
+ */
+public class FeatureTableModel extends AbstractTableModel {
+    private static final String[] COLUMN_NAMES = new String[] {"Feature", "Name"};
+
+    private List<Feature> features = Collections.emptyList();
+
+    /**
+     * Shows a new feature catalog in the table
+     * @param features The features to show. The list is not copied, so it must not be changed afterwards.
+     */
+    public void setFeatures(List<Feature> features) {
+        this.features = features == null ? Collections.<Feature>emptyList() : features;
+        fireTableDataChanged();
+    }
+
+    /**
+     * @param row The row in the model
+     * @return The feature shown in that row
+     */
+    public Feature getFeatureAt(int row) {
+        return features.get(row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return features.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Feature feature = features.get(row);
+        return column == 0 ? feature.getFeatureName() : feature.getName();
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+}
@@ -13,7 +13,6 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  *******************************************************************************/
-import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.project.Project;
@@ -23,8 +22,6 @@ import com.intellij.openapi.vfs.VirtualFile;
 import org.w3c.dom.Document;
 
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
 
 /**
  * Created by John on 6/10/2016.
@@ -67,30 +64,19 @@ public class ServerXMLDocumentManager {
     }
 
     /**
-     * This function writes changes to the the specified file (usually the server.xml file)
-     * @param updatedDocument A file object representing the file we want to write to.
+     * This function shows changes made to the specified file (usually the server.xml file) in the IntelliJ editor.
+     * The file has already been written by the ServerXMLWriter, so it is only refreshed from disk here. Writing it
+     * again through the VirtualFile would replace it in place and lose the atomic write. IntelliJ then reloads the
+     * editor, or asks first if it has changes that were typed after the edit was made.
+     * @param updatedDocument A file object representing the file that was changed.
      */
     public void writeChanges(File updatedDocument) {
         this.serverXML = updatedDocument;
-
-        // Upd
-        try {
-            final byte[] byteDocument = Files.readAllBytes(updatedDocument.toPath());
-            Runnable runnable = new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        vf.setBinaryContent(byteDocument);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-            };
-            WriteCommandAction.runWriteCommandAction(project, runnable);
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (vf == null) {
             return;
         }
+
+        vf.refresh(false, false);
     }
 
     /**
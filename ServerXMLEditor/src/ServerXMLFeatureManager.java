@@ -19,15 +19,16 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
-import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.*;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by John Collier & Logan Kember on 5/27/2016.
@@ -36,8 +37,6 @@ import java.util.ArrayList;
  */
 public class ServerXMLFeatureManager {
 
-    private static ArrayList<Feature> featuresList = new ArrayList<>();
-    public static Document doc = null;
     public ServerXMLFeatureManager() {
 
     }
@@ -45,93 +44,101 @@ public class ServerXMLFeatureManager {
     /**
      * This function adds a feature to the Liberty server's Server.xml file
      * @param feature The feature that we want to add to the server.xml file, see wlp/lib/features for the options
-     * @param xmlFile The server.xml file that we're adding the feature to.
+     * @param writer The writer for the server.xml file that we're adding the feature to.
+     * @throws IOException If the server.xml file could not be read or written. The file is left unchanged.
      */
-    public static void addNewFeature(String feature, File xmlFile) {
+    public static void addNewFeature(String feature, ServerXMLWriter writer) throws IOException {
+        addNewFeatures(Collections.singletonList(feature), writer);
+    }
+
+    /**
+     * Adds several features to the Liberty server's Server.xml file in a single write
+     * @param features The features that we want to add to the server.xml file
+     * @param writer The writer for the server.xml file that we're adding the features to.
+     * @throws IOException If the server.xml file could not be read or written. The file is left unchanged.
+     */
+    public static void addNewFeatures(List<String> features, ServerXMLWriter writer) throws IOException {
         try {
             // Load the xml document
-            DocumentBuilder docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            doc = docBuilder.parse(xmlFile);
+            Document doc = writer.begin();
 
-            // Get the featureManager tag
-            Node featuresNode = doc.getElementsByTagName("featureManager").item(0);
+            // Get the featureManager tag, adding it if server.xml doesn't have one
+            Node featuresNode = ConfigElementEditor.findOrCreateElement(doc, "featureManager", null);
 
             // Load the features into an arraylist
             ArrayList<String> serverFeatures = loadFeatures(featuresNode);
-            if (serverFeatures.contains(feature)) {
-                System.out.println("The feature: "+ feature + " is already in Server.xml");
-            }
-            else {
+            for (String feature : features) {
+                if (serverFeatures.contains(feature)) {
+                    continue;
+                }
                 // Server.xml does not currently have this feature, so add it.
                 Element newFeature = doc.createElement("feature");
                 newFeature.appendChild(doc.createTextNode(feature));
                 featuresNode.appendChild(newFeature);
-
-                // The following code is to strip white space from the XML file, required for proper formatting
-                // See: http://stackoverflow.com/questions/978810/how-to-strip-whitespace-only-text-nodes-from-a-dom-before-serialization
-                XPathFactory xpathFactory = XPathFactory.newInstance();
-                XPathExpression xpathExp = xpathFactory.newXPath().compile("//text()[normalize-space(.) = '']");
-                NodeList emptyTextNodes = (NodeList) xpathExp.evaluate(doc, XPathConstants.NODESET);
-                // Remove each empty text node from document.
-                for (int i = 0; i < emptyTextNodes.getLength(); i++) {
-                    Node emptyTextNode = emptyTextNodes.item(i);
-                    emptyTextNode.getParentNode().removeChild(emptyTextNode);
-                }
-
-                // Write the content into xml file
-                Transformer transformer = TransformerFactory.newInstance().newTransformer();
-                DOMSource source = new DOMSource(doc);
-                StreamResult result = new StreamResult(xmlFile);
-                transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-                transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-                transformer.transform(source, result);
-
+                serverFeatures.add(feature);
             }
+
+            // Write the content into xml file
+            writer.commit();
         }
-        catch (Exception e) {
-            // Maybe do something?
-            e.printStackTrace();
-            return;
+        catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
         }
     }
 
     /**
      * Removes a given feature from a server.xml file
      * @param feature The feature we want to remove from server.xml
-     * @param xmlFile The Server.xml file we want to remove the feature from
+     * @param writer The writer for the Server.xml file we want to remove the feature from
+     * @throws IOException If the server.xml file could not be read or written. The file is left unchanged.
      */
-    public static void removeFeature(String feature, File xmlFile) {
+    public static void removeFeature(String feature, ServerXMLWriter writer) throws IOException {
+        removeFeatures(Collections.singletonList(feature), writer);
+    }
+
+    /**
+     * Removes several features from a server.xml file in a single write
+     * @param features The features we want to remove from server.xml
+     * @param writer The writer for the Server.xml file we want to remove the features from
+     * @throws IOException If the server.xml file could not be read or written. The file is left unchanged.
+     */
+    public static void removeFeatures(List<String> features, ServerXMLWriter writer) throws IOException {
         try {
-            DocumentBuilder docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            Document doc = docBuilder.parse(xmlFile);
+            Document doc = writer.begin();
 
-            // Get the parent featureInfo node and the feature node that we need to remove
+            // Get the parent featureInfo node
             String expression = "/server/featureManager";
             XPath xPath =  XPathFactory.newInstance().newXPath();
             Node featureNode = (Node) xPath.compile(expression).evaluate(doc, XPathConstants.NODE);
 
-            expression = "/server/featureManager/feature[./text()='" + feature + "']";
-            xPath = XPathFactory.newInstance().newXPath();
-            Node featureChild = (Node) xPath.compile(expression).evaluate(doc, XPathConstants.NODE);
+            for (String feature : features) {
+                // Get the feature node that we need to remove
+                expression = "/server/featureManager/feature[./text()='" + feature + "']";
+                Node featureChild = (Node) xPath.compile(expression).evaluate(doc, XPathConstants.NODE);
+                if (featureChild == null) {
+                    continue;
+                }
 
-            //Removes blank spaces
-            Node prev = featureChild.getPreviousSibling();
-            if (prev != null && prev.getNodeType()==Node.TEXT_NODE && prev.getNodeValue().trim().length() == 0) {
-                featureNode.removeChild(prev);
+                //Removes blank spaces
+                Node prev = featureChild.getPreviousSibling();
+                if (prev != null && prev.getNodeType()==Node.TEXT_NODE && prev.getNodeValue().trim().length() == 0) {
+                    featureNode.removeChild(prev);
+                }
+                //Removes xml tag
+                featureNode.removeChild(featureChild);
             }
-            //Removes xml tag
-            featureNode.removeChild(featureChild);
 
             // Write the content into xml file
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            DOMSource source = new DOMSource(doc);
-            StreamResult result = new StreamResult(xmlFile);
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-
-            transformer.transform(source, result);
-        } catch (Exception e) {
-            e.printStackTrace();
+            writer.commit();
+        }
+        catch (XPathExpressionException e) {
+            writer.abort();
+            throw new IOException("Unable to update " + writer.getFile().getName(), e);
+        }
+        catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
         }
     }
 
@@ -153,83 +160,90 @@ public class ServerXMLFeatureManager {
     }
 
     /**
-     * This function loads all of the features from the features xml file and loads them into an array list
+     * This function loads all of the features from the features xml file and loads them into an array list.
+     * Which features enable each feature is only worked out when it's shown.
      * @param xmlFile The xml file that specifies all of the possible features.
-     * @return An arraylist of all of features
+     * @return A new arraylist of all of features
+     * @throws IOException If the features xml file could not be read
      */
-    public static ArrayList<Feature> loadAllFeatures(File xmlFile) {
+    public static ArrayList<Feature> loadAllFeatures(File xmlFile) throws IOException {
         try {
-            // Load each feature into the list
-            DocumentBuilder docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            Document doc = docBuilder.parse(xmlFile);
+            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(xmlFile);
+
+            // Look features up by name instead of with indexOf, the catalog has hundreds of them
+            Map<String, Feature> featuresByName = new LinkedHashMap<>();
+            for (Node child = doc.getDocumentElement().getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (isElement(child, "feature")) {
+                    String name = ((Element) child).getAttribute("name");
+                    featuresByName.put(name, loadFeature(name, child, featuresByName));
+                }
+            }
+            return new ArrayList<>(featuresByName.values());
+        }
+        catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Unable to load the features from " + xmlFile.getName(), e);
+        }
+    }
 
-            // Get the description and name of each feature and add it to the list of features
-            String expression = "/featureInfo/feature/description";
-            String expression1 = "/featureInfo/feature/displayName";
-            XPath xPath =  XPathFactory.newInstance().newXPath();
-            NodeList nl = (NodeList) xPath.compile(expression).evaluate(doc, XPathConstants.NODESET);
-            for (int i = 0; i < nl.getLength(); i++) {
-                String description = nl.item(i).getTextContent();
-                String name = nl.item(i).getParentNode().getAttributes().getNamedItem("name").getNodeValue();
-                Feature tempFeature = new Feature(name, description);
-                featuresList.add(tempFeature);
+    /**
+     * Reads a feature from its element in features.xml. Only the text is kept, not the element, so the
+     * document can be thrown away once the catalog is loaded.
+     */
+    private static Feature loadFeature(String featureName, Node feature, Map<String, Feature> catalog) {
+        String name = null;
+        String description = null;
+        List<String> enables = new ArrayList<>();
+        for (Node child = feature.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (name == null && isElement(child, "displayName")) {
+                name = getText(child);
             }
-            nl = (NodeList) xPath.compile(expression1).evaluate(doc, XPathConstants.NODESET);
-            for (int i=0; i<nl.getLength(); i++) {
-                String displayName = nl.item(i).getTextContent();
-                String featureName = nl.item(i).getParentNode().getAttributes().getNamedItem("name").getNodeValue();
-                featuresList.get(featuresList.indexOf(new Feature(featureName, ""))).setName(displayName);
+            else if (description == null && isElement(child, "description")) {
+                description = getText(child);
             }
-
-            // Get the enables and enabledBy text for the feature
-            expression = "/featureInfo/feature/enables";
-            xPath = XPathFactory.newInstance().newXPath();
-            nl = (NodeList) xPath.compile(expression).evaluate(doc, XPathConstants.NODESET);
-            for (int i=0; i<nl.getLength(); i++) {
-                Element el = (Element) nl.item(i);
-                String name = el.getParentNode().getAttributes().getNamedItem("name").getNodeValue();
-                int index = featuresList.indexOf(new Feature(name,""));
-                int reverseIndex = featuresList.indexOf(new Feature(el.getTextContent(), ""));
-                if (index == -1 || reverseIndex == -1) {
-                    System.exit(0);
-                }
-                featuresList.get(index).addEnables(el.getTextContent());
-                featuresList.get(reverseIndex).addEnabledBy(name);
+            else if (isElement(child, "enables")) {
+                enables.add(getText(child));
             }
-            return featuresList;
         }
-        catch (Exception e) {
-            e.printStackTrace();
-            return null;
+        return new Feature(featureName, name, description, enables, catalog);
+    }
+
+    private static boolean isElement(Node node, String name) {
+        return node.getNodeType() == Node.ELEMENT_NODE && node.getNodeName().equals(name);
+    }
+
+    private static String getText(Node node) {
+        StringBuilder text = new StringBuilder();
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                text.append(child.getNodeValue());
+            }
         }
+        return text.toString();
     }
 
     /**
      * Adds the specified OnError functionality/attribute to the server.xml file
      * @param error Either FAIL, WARN, OR
-     * @param xmlFile The server.xml file
+     * @param writer The writer for the server.xml file
+     * @throws IOException If the server.xml file could not be read or written. The file is left unchanged.
      */
-    public static void addOnError(String error, File xmlFile) {
+    public static void addOnError(String error, ServerXMLWriter writer) throws IOException {
         try {
-            DocumentBuilder docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            Document doc = docBuilder.parse(xmlFile);
+            Document doc = writer.begin();
 
-            // Set the OnError attribute
-            Element httpEndpoint = (Element) doc.getElementsByTagName("httpEndpoint").item(0);
+            // Set the OnError attribute, adding the default endpoint if server.xml doesn't have one
+            Element httpEndpoint = ConfigElementEditor.findElement(doc, "httpEndpoint", null, 0);
+            if (httpEndpoint == null) {
+                httpEndpoint = ConfigElementEditor.createElement(doc, "httpEndpoint", "defaultHttpEndpoint");
+            }
             httpEndpoint.setAttribute("onError", error);
 
             // Write the content into xml file
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            DOMSource source = new DOMSource(doc);
-            StreamResult result = new StreamResult(xmlFile);
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-            transformer.transform(source, result);
-        } catch (Exception e) {
-            e.printStackTrace();
+            writer.commit();
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
         }
-
-
     }
 
 }
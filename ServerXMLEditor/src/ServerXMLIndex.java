@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of the config elements in a server.xml file, keyed by element type and id. Nested elements are
+ * indexed under their parent's type, e.g. a connectionManager inside a dataSource is a "dataSource>connectionManager".
+ *
+ * The index is built in a single streaming pass over the file and is then kept up to date by the
+ * ConfigElementEditor as elements are added, changed and removed, so lookups never need to walk the document.
+ * Every method is synchronized and lists are returned as copies, so the index can be read from any thread.
+ * The UI reads a snapshot() instead, which nothing else changes, so it never waits for an edit.
+ */
+public class ServerXMLIndex {
+    private final Map<String, List<ConfigElement>> byType = new LinkedHashMap<>();
+    private final Map<String, ConfigElement> byKey = new HashMap<>();
+    private final Set<String> features = new LinkedHashSet<>();
+    private boolean readOnly = false;
+
+    /**
+     * Builds the index for a server.xml file
+     * @param xmlFile The server.xml file
+     * @return The index
+     * @throws IOException If the file could not be read or is not valid xml
+     */
+    public static ServerXMLIndex build(File xmlFile) throws IOException {
+        ServerXMLIndex index = new ServerXMLIndex();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(xmlFile.toPath()))) {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            try {
+                // The types of the config elements that are open, <server> itself isn't one
+                Deque<String> openTypes = new ArrayDeque<>();
+                boolean inServer = false;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if (!inServer) {
+                            inServer = true;
+                        }
+                        else if (name.equals("feature") && "featureManager".equals(openTypes.peek())) {
+                            // getElementText() reads up to and including the end tag
+                            index.features.add(reader.getElementText().trim());
+                        }
+                        else {
+                            String type = openTypes.isEmpty() ? name : openTypes.peek() + ConfigElement.NESTED + name;
+                            index.add(readElement(reader, type, index));
+                            openTypes.push(type);
+                        }
+                    }
+                    else if (event == XMLStreamConstants.END_ELEMENT && !openTypes.isEmpty()) {
+                        openTypes.pop();
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to index " + xmlFile.getName(), e);
+        }
+        return index;
+    }
+
+    private static ConfigElement readElement(XMLStreamReader reader, String type, ServerXMLIndex index) {
+        String id = reader.getAttributeValue(null, "id");
+        List<ConfigElement> sameType = index.byType.get(type);
+        ConfigElement element = new ConfigElement(type, id, sameType == null ? 0 : sameType.size());
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            element.setAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+        return element;
+    }
+
+    /**
+     * Returns a copy of the index that can't be changed, and that isn't changed by later edits
+     * @return The snapshot
+     */
+    public synchronized ServerXMLIndex snapshot() {
+        ServerXMLIndex snapshot = new ServerXMLIndex();
+        for (List<ConfigElement> elements : byType.values()) {
+            for (ConfigElement element : elements) {
+                ConfigElement copy = new ConfigElement(element.getType(), element.getId(), element.getOrdinal());
+                for (Map.Entry<String, String> attribute : element.getAttributes().entrySet()) {
+                    copy.setAttribute(attribute.getKey(), attribute.getValue());
+                }
+                snapshot.add(copy);
+            }
+        }
+        snapshot.features.addAll(features);
+        snapshot.readOnly = true;
+        return snapshot;
+    }
+
+    /**
+     * Looks up a config element
+     * @param type The element name, e.g. "executor"
+     * @param id The id of the element, or null to get the first element of this type
+     * @return The element, or null if there isn't one
+     */
+    public synchronized ConfigElement get(String type, String id) {
+        if (id == null) {
+            List<ConfigElement> elements = byType.get(type);
+            return elements == null || elements.isEmpty() ? null : elements.get(0);
+        }
+        return byKey.get(ConfigElement.key(type, id));
+    }
+
+    /**
+     * Looks up the current index entry for an element, which may come from an older version of the index
+     * @param element The element
+     * @return The element in this index, or null if it isn't there anymore
+     */
+    public synchronized ConfigElement get(ConfigElement element) {
+        if (element.getId() != null) {
+            return get(element.getType(), element.getId());
+        }
+        List<ConfigElement> elements = byType.get(element.getType());
+        if (elements == null || element.getOrdinal() >= elements.size()) {
+            return null;
+        }
+        return elements.get(element.getOrdinal());
+    }
+
+    /**
+     * @param type The element name
+     * @return All of the elements of this type, in the order they appear in server.xml
+     */
+    public synchronized List<ConfigElement> getAll(String type) {
+        List<ConfigElement> elements = byType.get(type);
+        if (elements == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(elements);
+    }
+
+    /**
+     * @param name The element name, e.g. "connectionManager"
+     * @return All of the elements with this name, whether they are top level or nested inside other elements
+     */
+    public synchronized List<ConfigElement> getAllNamed(String name) {
+        List<ConfigElement> elements = new ArrayList<>();
+        for (Map.Entry<String, List<ConfigElement>> entry : byType.entrySet()) {
+            String type = entry.getKey();
+            if (type.equals(name) || type.endsWith(ConfigElement.NESTED + name)) {
+                elements.addAll(entry.getValue());
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * @param type The element type
+     * @return true if any elements are nested inside elements of this type
+     */
+    public synchronized boolean hasNested(String type) {
+        for (String indexedType : byType.keySet()) {
+            if (indexedType.startsWith(type + ConfigElement.NESTED)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The element types that appear in server.xml
+     */
+    public synchronized Set<String> getTypes() {
+        return new LinkedHashSet<>(byType.keySet());
+    }
+
+    /**
+     * @return The features listed in the featureManager element(s)
+     */
+    public synchronized Set<String> getFeatures() {
+        return new LinkedHashSet<>(features);
+    }
+
+    /**
+     * @return Every indexed element, grouped by type
+     */
+    public synchronized List<ConfigElement> getElements() {
+        List<ConfigElement> elements = new ArrayList<>();
+        for (List<ConfigElement> typeElements : byType.values()) {
+            elements.addAll(typeElements);
+        }
+        return elements;
+    }
+
+    /**
+     * Adds an element to the index. The element must be the last of its type in server.xml.
+     * @param element The element to add
+     */
+    public synchronized void add(ConfigElement element) {
+        checkWritable();
+        List<ConfigElement> elements = byType.get(element.getType());
+        if (elements == null) {
+            elements = new ArrayList<>();
+            byType.put(element.getType(), elements);
+        }
+        elements.add(element);
+        if (element.getId() != null) {
+            byKey.put(element.getKey(), element);
+        }
+    }
+
+    /**
+     * Removes an element from the index and shifts the position of the elements of the same type that follow it
+     * @param element The element to remove
+     */
+    public synchronized void remove(ConfigElement element) {
+        checkWritable();
+        List<ConfigElement> elements = byType.get(element.getType());
+        if (elements == null || !elements.remove(element)) {
+            return;
+        }
+        for (int i = element.getOrdinal(); i < elements.size(); i++) {
+            elements.get(i).setOrdinal(i);
+        }
+        if (elements.isEmpty()) {
+            byType.remove(element.getType());
+        }
+        if (element.getId() != null) {
+            byKey.remove(element.getKey());
+        }
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("The index snapshot can't be changed");
+        }
+    }
+}
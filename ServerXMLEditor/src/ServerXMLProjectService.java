@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileAdapter;
+import com.intellij.openapi.vfs.VirtualFileEvent;
+import com.intellij.openapi.vfs.VirtualFileManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Project level service that owns the server.xml files opened in a project: the writer that every edit to a file
+ * goes through, the document manager that shows the file in the IntelliJ editor, and the config element editor
+ * and index for it.
+ *
+ * There is one of each per file for the life of the project, however many times the file is loaded, and they are
+ * released when the project is closed. When a file is changed outside of the plugin (typed in the IntelliJ editor,
+ * changed on disk) its index is thrown away.
+ *
+ * The service also runs the UI's ServerXMLTasks, one at a time on a background thread, so edits are applied in
+ * the order they were made without blocking the event dispatch thread.
+ */
+public class ServerXMLProjectService implements Disposable {
+    private final Project project;
+    private final ConcurrentMap<File, ServerXMLWriter> writers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<File, ServerXMLDocumentManager> documentManagers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<File, ConfigElementEditor> configEditors = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Server.xml Editor");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public ServerXMLProjectService(Project project) {
+        this.project = project;
+
+        VirtualFileManager.getInstance().addVirtualFileListener(new VirtualFileAdapter() {
+            @Override
+            public void contentsChanged(VirtualFileEvent event) {
+                final File key = new File(event.getFile().getPath()).getAbsoluteFile();
+                final ConfigElementEditor configEditor = configEditors.get(key);
+                if (configEditor == null) {
+                    return;
+                }
+                // Reading the file can wait for a write, so check it after the edits that are already queued
+                submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        // The refresh after one of our own writes finds the file as we wrote it, the index is still good
+                        try {
+                            if (!getWriter(key).isChangedOnDisk()) {
+                                return;
+                            }
+                        } catch (IOException e) {
+                            // Fall through, the index will be rebuilt from whatever is on disk
+                        }
+                        configEditor.invalidate();
+                    }
+                });
+            }
+        }, this);
+    }
+
+    public static ServerXMLProjectService getInstance(Project project) {
+        return ServiceManager.getService(project, ServerXMLProjectService.class);
+    }
+
+    /**
+     * Queues work on a server.xml file to run on the background thread, after the work that is already queued
+     * @param task The work, usually a ServerXMLTask
+     */
+    public void submit(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // The project is closing
+        }
+    }
+
+    /**
+     * Saves the changes typed into the IntelliJ editor for a server.xml file, so that an edit made by the plugin
+     * starts from them instead of overwriting them. Call this on the event dispatch thread before submitting the edit.
+     * @param xmlFile The server.xml file
+     */
+    public void saveDocument(File xmlFile) {
+        VirtualFile vf = LocalFileSystem.getInstance().findFileByIoFile(xmlFile.getAbsoluteFile());
+        if (vf == null) {
+            return;
+        }
+        FileDocumentManager fileDocumentManager = FileDocumentManager.getInstance();
+        Document document = fileDocumentManager.getCachedDocument(vf);
+        if (document != null && fileDocumentManager.isDocumentUnsaved(document)) {
+            fileDocumentManager.saveDocument(document);
+        }
+    }
+
+    /**
+     * Returns the writer for a server.xml file, so that every edit to the file shares the same lock and journal
+     * @param xmlFile The server.xml file
+     * @return The writer
+     */
+    public ServerXMLWriter getWriter(File xmlFile) {
+        File key = xmlFile.getAbsoluteFile();
+        ServerXMLWriter writer = writers.get(key);
+        if (writer == null) {
+            ServerXMLWriter newWriter = new ServerXMLWriter(key);
+            writer = writers.putIfAbsent(key, newWriter);
+            if (writer == null) {
+                writer = newWriter;
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * Returns the document manager for a server.xml file, opening the file in the IntelliJ editor the first time
+     * @param xmlFile The server.xml file
+     * @param editor The IntelliJ editor that will be displaying the document
+     * @return The document manager
+     */
+    public ServerXMLDocumentManager getDocumentManager(File xmlFile, Editor editor) {
+        File key = xmlFile.getAbsoluteFile();
+        ServerXMLDocumentManager docManager = documentManagers.get(key);
+        if (docManager == null) {
+            ServerXMLDocumentManager newDocManager = new ServerXMLDocumentManager(editor, project, key);
+            docManager = documentManagers.putIfAbsent(key, newDocManager);
+            if (docManager == null) {
+                docManager = newDocManager;
+            }
+        }
+        else {
+            docManager.loadFile(key);
+        }
+        return docManager;
+    }
+
+    /**
+     * Returns the config element editor for a server.xml file, indexing the file the first time
+     * @param xmlFile The server.xml file
+     * @return The config element editor
+     * @throws IOException If the file could not be read or is not valid xml
+     */
+    public ConfigElementEditor getConfigEditor(File xmlFile) throws IOException {
+        File key = xmlFile.getAbsoluteFile();
+        ConfigElementEditor configEditor = configEditors.get(key);
+        if (configEditor == null) {
+            ConfigElementEditor newConfigEditor = new ConfigElementEditor(getWriter(key));
+            configEditor = configEditors.putIfAbsent(key, newConfigEditor);
+            if (configEditor == null) {
+                configEditor = newConfigEditor;
+            }
+        }
+        return configEditor;
+    }
+
+    @Override
+    public void dispose() {
+        executor.shutdownNow();
+        configEditors.clear();
+        documentManagers.clear();
+        writers.clear();
+    }
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+import javax.swing.*;
+import java.io.IOException;
+
+/**
+ * Work on a server.xml file that the UI hands to ServerXMLProjectService.submit(), so that parsing, writing
+ * (and waiting for the disk) and rebuilding the index never block the event dispatch thread.
+ *
+ * compute() runs on the service's background thread, one task at a time in the order they were submitted.
+ * Its result or error is then passed to onSuccess() or onError() on the event dispatch thread.
+ */
+public abstract class ServerXMLTask<T> implements Runnable {
+
+    /**
+     * Does the work, on the background thread
+     * @return The result to pass to onSuccess()
+     * @throws IOException If server.xml could not be read or written
+     */
+    protected abstract T compute() throws IOException;
+
+    /**
+     * Called on the event dispatch thread after compute() has finished
+     * @param result The result of compute()
+     */
+    protected abstract void onSuccess(T result);
+
+    /**
+     * Called on the event dispatch thread if compute() failed
+     * @param e The error
+     */
+    protected abstract void onError(IOException e);
+
+    @Override
+    public final void run() {
+        try {
+            final T result = compute();
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    onSuccess(result);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            final IOException error = e instanceof IOException ? (IOException) e : new IOException(e.toString(), e);
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    onError(error);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,419 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.DosFileAttributeView;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes changes to a server.xml file without ever leaving it half written.
+ *
+ * The document is serialized to a temporary file in the same directory, forced to disk and then
+ * renamed over the original. Several edits can be grouped into one write with begin()/commit(), and
+ * the last few versions of the file are kept in memory so that a change can be rolled back.
+ *
+ * A transaction belongs to the thread that started it and holds the write lock until it is committed or
+ * aborted, so edits from the UI and from background tasks are applied one after the other instead of
+ * overwriting each other. Readers don't need the lock, the rename means they always see a complete file.
+ * Every edit to a file has to go through the same writer, which is owned by the ServerXMLProjectService.
+ */
+public class ServerXMLWriter {
+
+    private static final int JOURNAL_SIZE = 10;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final File xmlFile;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LinkedList<byte[]> journal = new LinkedList<>();
+    private byte[] writtenDigest = null;
+    private Document transactionDoc = null;
+    private int transactionDepth = 0;
+    private volatile int modificationCount = 0;
+
+    /**
+     * Creates a writer for a server.xml file
+     * @param xmlFile The server.xml file
+     */
+    public ServerXMLWriter(File xmlFile) {
+        this.xmlFile = xmlFile.getAbsoluteFile();
+    }
+
+    public File getFile() { return this.xmlFile; }
+
+    /**
+     * Starts a transaction and returns the document that the edits should be made to. Transactions can be nested,
+     * only the outermost commit() writes the file. Blocks while another thread has a transaction open.
+     * @return The parsed server.xml document
+     * @throws IOException If the server.xml file could not be read or parsed
+     */
+    public Document begin() throws IOException {
+        lock.writeLock().lock();
+        if (transactionDepth == 0) {
+            try {
+                transactionDoc = parse(xmlFile);
+            } catch (IOException | RuntimeException e) {
+                lock.writeLock().unlock();
+                throw e;
+            }
+        }
+        transactionDepth++;
+        return transactionDoc;
+    }
+
+    /**
+     * Ends the current transaction. If this is the outermost transaction the document is written to disk.
+     * @throws IOException If the document could not be written. The original file is left untouched.
+     */
+    public void commit() throws IOException {
+        if (!lock.isWriteLockedByCurrentThread() || transactionDepth == 0) {
+            throw new IllegalStateException("No transaction in progress for " + xmlFile.getName());
+        }
+        try {
+            transactionDepth--;
+            if (transactionDepth > 0) {
+                return;
+            }
+            Document doc = transactionDoc;
+            transactionDoc = null;
+            write(doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Discards the current transaction (including any transactions it is nested in) without writing anything.
+     */
+    public void abort() {
+        if (!lock.isWriteLockedByCurrentThread()) {
+            return;
+        }
+        transactionDepth = 0;
+        transactionDoc = null;
+        while (lock.isWriteLockedByCurrentThread()) {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the document to the server.xml file, saving the current contents of the file in the journal first
+     * @param doc The document to write
+     * @throws IOException If the document could not be written. The original file is left untouched.
+     */
+    public void write(Document doc) throws IOException {
+        lock.writeLock().lock();
+        try {
+            writeDocument(doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void writeDocument(Document doc) throws IOException {
+        byte[] previous = xmlFile.exists() ? readBytes(xmlFile.toPath()) : null;
+        removeWhitespace(doc.getDocumentElement());
+
+        MessageDigest digest = newDigest();
+        Path target = getTarget();
+        Path tempFile = createTempFile(target);
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE);
+                 OutputStream out = new BufferedOutputStream(
+                         new DigestOutputStream(Channels.newOutputStream(channel), digest), BUFFER_SIZE)) {
+                newTransformer().transform(new DOMSource(doc), new StreamResult(out));
+                out.flush();
+                channel.force(true);
+            }
+            replace(tempFile, target);
+        } catch (TransformerException e) {
+            throw new IOException("Unable to write " + xmlFile.getName(), e);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+
+        modificationCount++;
+        writtenDigest = digest.digest();
+        if (previous != null) {
+            journal.addFirst(previous);
+            while (journal.size() > JOURNAL_SIZE) {
+                journal.removeLast();
+            }
+        }
+    }
+
+    /**
+     * Restores the server.xml file to the version it had before the last write
+     * @return true if a previous version was restored, false if there is nothing to roll back
+     * @throws IOException If the previous version could not be written, or if the file was changed by something
+     *                     else since the last write. Restoring it then would throw those changes away.
+     */
+    public boolean rollback() throws IOException {
+        lock.writeLock().lock();
+        try {
+            return restorePrevious();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean restorePrevious() throws IOException {
+        if (journal.isEmpty()) {
+            return false;
+        }
+        byte[] previous = journal.getFirst();
+        if (isChangedOnDisk()) {
+            throw new IOException(xmlFile.getName() + " has been changed outside of the editor since the last edit");
+        }
+
+        Path target = getTarget();
+        Path tempFile = createTempFile(target);
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(previous);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            replace(tempFile, target);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        modificationCount++;
+        writtenDigest = newDigest().digest(previous);
+        journal.removeFirst();
+        return true;
+    }
+
+    /**
+     * @return The number of times this writer has changed the file, used to tell if a cached view of it is stale
+     */
+    public int getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Checks whether the server.xml file still holds the last version this writer wrote to it
+     * @return true if something else has changed the file since this writer last wrote it
+     * @throws IOException If the file could not be read
+     */
+    public boolean isChangedOnDisk() throws IOException {
+        lock.readLock().lock();
+        try {
+            if (writtenDigest == null || !xmlFile.exists()) {
+                return writtenDigest != null;
+            }
+            return !MessageDigest.isEqual(writtenDigest, newDigest().digest(readBytes(xmlFile.toPath())));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return true if there is a previous version of the file that can be restored with rollback()
+     */
+    public boolean canRollback() {
+        lock.readLock().lock();
+        try {
+            return !journal.isEmpty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Parses an xml file into a DOM document
+     * @param xmlFile The xml file to parse
+     * @return The parsed document
+     * @throws IOException If the file could not be read or is not valid xml
+     */
+    public static Document parse(File xmlFile) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(xmlFile.toPath()), BUFFER_SIZE)) {
+            DocumentBuilder docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+            Document doc = docBuilder.parse(in);
+            doc.setDocumentURI(xmlFile.toURI().toString());
+            return doc;
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Unable to parse " + xmlFile.getName(), e);
+        }
+    }
+
+    /**
+     * Strips the whitespace only text nodes from the document, otherwise the indenting transformer adds
+     * extra blank lines every time the file is written.
+     * See: http://stackoverflow.com/questions/978810/how-to-strip-whitespace-only-text-nodes-from-a-dom-before-serialization
+     */
+    private static void removeWhitespace(Node node) {
+        Node child = node.getFirstChild();
+        while (child != null) {
+            Node next = child.getNextSibling();
+            if (child.getNodeType() == Node.TEXT_NODE && child.getNodeValue().trim().isEmpty()) {
+                node.removeChild(child);
+            }
+            else if (child.getNodeType() == Node.ELEMENT_NODE) {
+                removeWhitespace(child);
+            }
+            child = next;
+        }
+    }
+
+    private static Transformer newTransformer() throws TransformerException {
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+        return transformer;
+    }
+
+    private static byte[] readBytes(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // Keep reading until the buffer is full
+            }
+            return buffer.array();
+        }
+    }
+
+    /**
+     * The temp file has to be in the same directory as server.xml, otherwise the rename is not atomic
+     */
+    /**
+     * Returns the file that is actually written. If server.xml is a symbolic link that is the file it points to,
+     * renaming over the link itself would replace it with a regular file.
+     */
+    private Path getTarget() throws IOException {
+        Path path = xmlFile.toPath();
+        return Files.exists(path) ? path.toRealPath() : path;
+    }
+
+    /**
+     * Creates the temp file next to the target, a rename is only atomic within the same file system
+     */
+    private static Path createTempFile(Path target) throws IOException {
+        return Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+    }
+
+    private static void replace(Path tempFile, Path target) throws IOException {
+        copyAttributes(target, tempFile);
+        try {
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // Make the rename itself durable. Directories can't be opened on Windows, so this is best effort.
+        try (FileChannel dirChannel = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+            dirChannel.force(true);
+        } catch (IOException e) {
+            // Ignore, the file contents are already on disk
+        }
+    }
+
+    /**
+     * Gives the temp file the permissions and owner of the server.xml file it is replacing. Temp files are
+     * only readable by us, which would stop a Liberty server running as another user from reading its config.
+     * @param original The server.xml file
+     * @param tempFile The temp file that will replace it
+     * @throws IOException If the permissions could not be copied
+     */
+    private static void copyAttributes(Path original, Path tempFile) throws IOException {
+        if (!Files.exists(original)) {
+            return;
+        }
+
+        PosixFileAttributeView posixView = Files.getFileAttributeView(original, PosixFileAttributeView.class);
+        if (posixView != null) {
+            PosixFileAttributes attributes = posixView.readAttributes();
+            PosixFileAttributeView tempView = Files.getFileAttributeView(tempFile, PosixFileAttributeView.class);
+            tempView.setPermissions(attributes.permissions());
+            // Only root can give a file away, so keep our own owner and group if this fails
+            try {
+                tempView.setOwner(attributes.owner());
+            } catch (IOException e) {
+                // Ignore
+            }
+            try {
+                tempView.setGroup(attributes.group());
+            } catch (IOException e) {
+                // Ignore
+            }
+            return;
+        }
+
+        AclFileAttributeView aclView = Files.getFileAttributeView(original, AclFileAttributeView.class);
+        if (aclView != null) {
+            AclFileAttributeView tempView = Files.getFileAttributeView(tempFile, AclFileAttributeView.class);
+            tempView.setAcl(aclView.getAcl());
+            try {
+                tempView.setOwner(aclView.getOwner());
+            } catch (IOException e) {
+                // Ignore, see above
+            }
+        }
+
+        DosFileAttributeView dosView = Files.getFileAttributeView(original, DosFileAttributeView.class);
+        if (dosView != null) {
+            DosFileAttributes attributes = dosView.readAttributes();
+            DosFileAttributeView tempView = Files.getFileAttributeView(tempFile, DosFileAttributeView.class);
+            tempView.setHidden(attributes.isHidden());
+            tempView.setSystem(attributes.isSystem());
+            tempView.setArchive(attributes.isArchive());
+            tempView.setReadOnly(attributes.isReadOnly());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the TuningRules against a server.xml file and applies the fixes for the problems they find
+ */
+public class TuningAdvisor {
+    private final List<TuningRule> rules = new ArrayList<>();
+
+    /**
+     * Creates an advisor with the built in rules
+     */
+    public TuningAdvisor() {
+        rules.addAll(TuningRules.getDefaultRules());
+    }
+
+    /**
+     * Adds a rule to the advisor
+     * @param rule The rule to add
+     */
+    public void addRule(TuningRule rule) {
+        rules.add(rule);
+    }
+
+    /**
+     * Checks a server.xml file against every rule
+     * @param index The index of the server.xml file
+     * @return The problems found
+     */
+    public List<TuningFinding> analyze(ServerXMLIndex index) {
+        List<TuningFinding> findings = new ArrayList<>();
+        for (TuningRule rule : rules) {
+            findings.addAll(rule.evaluate(index));
+        }
+        return findings;
+    }
+
+    /**
+     * Applies the fixes for several findings in a single write to server.xml. Findings without a fix are skipped.
+     * @param configEditor The editor for the server.xml file
+     * @param findings The findings to fix
+     * @throws IOException If server.xml could not be read or written. The file is left unchanged.
+     */
+    public void applyFixes(ConfigElementEditor configEditor, List<TuningFinding> findings) throws IOException {
+        List<TuningFix> fixes = new ArrayList<>();
+        for (TuningFinding finding : findings) {
+            if (finding.isFixable()) {
+                fixes.add(finding.getFix());
+            }
+        }
+        if (fixes.isEmpty()) {
+            return;
+        }
+
+        ServerXMLWriter writer = configEditor.getWriter();
+        try {
+            writer.begin();
+            for (TuningFix fix : fixes) {
+                fix.apply(configEditor);
+            }
+            writer.commit();
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+    }
+}
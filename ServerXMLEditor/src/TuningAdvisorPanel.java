@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tool window panel that lists the performance problems the TuningAdvisor finds in server.xml
+ * and applies the fixes for the selected ones. Analysis and fixes run as ServerXMLTasks.
+ */
+public class TuningAdvisorPanel extends JPanel {
+    private final ServerXMLProjectService service;
+    private ConfigElementEditor configEditor = null;
+    private final TuningAdvisor advisor = new TuningAdvisor();
+    private final Runnable onChange;
+    private List<TuningFinding> findings = new ArrayList<>();
+
+    // UI Components
+    private DefaultTableModel findingModel = new DefaultTableModel(new String[] {"Rule", "Element", "Problem", "Fix"}, 0);
+    private JTable findingTable = new JTable(findingModel);
+    private JButton analyzeButton = new JButton("Analyze");
+    private JButton fixButton = new JButton("Fix Selected");
+    private JButton fixAllButton = new JButton("Fix All");
+
+    /**
+     * Creates the panel
+     * @param service The project service that runs the analysis and fixes
+     * @param onChange Called after server.xml has been changed, so the IntelliJ editor can be refreshed
+     */
+    public TuningAdvisorPanel(ServerXMLProjectService service, Runnable onChange) {
+        super(new BorderLayout());
+        this.service = service;
+        this.onChange = onChange;
+
+        findingTable.setDefaultEditor(Object.class, null);
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttonPanel.add(analyzeButton);
+        buttonPanel.add(fixButton);
+        buttonPanel.add(fixAllButton);
+        add(new JScrollPane(findingTable), BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.SOUTH);
+        setEditingEnabled(false);
+
+        analyzeButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                refresh();
+            }
+        });
+
+        fixButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                int selection[] = findingTable.getSelectedRows();
+                List<TuningFinding> selected = new ArrayList<>();
+                for (int i=0; i<selection.length; i++) {
+                    selected.add(findings.get(selection[i]));
+                }
+                applyFixes(selected);
+            }
+        });
+
+        fixAllButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                applyFixes(new ArrayList<>(findings));
+            }
+        });
+    }
+
+    /**
+     * Sets the editor for the server.xml file that was loaded and analyzes it
+     * @param configEditor The editor for the loaded server.xml file
+     */
+    public void setEditor(ConfigElementEditor configEditor) {
+        this.configEditor = configEditor;
+        setEditingEnabled(configEditor != null);
+        refresh();
+    }
+
+    /**
+     * Runs the advisor against a snapshot of the index in the background and lists the problems found
+     */
+    public void refresh() {
+        findings = new ArrayList<>();
+        findingModel.setRowCount(0);
+        final ConfigElementEditor editor = configEditor;
+        if (editor == null) {
+            return;
+        }
+        service.submit(new ServerXMLTask<List<TuningFinding>>() {
+            @Override
+            protected List<TuningFinding> compute() throws IOException {
+                return advisor.analyze(editor.getIndex().snapshot());
+            }
+
+            @Override
+            protected void onSuccess(List<TuningFinding> result) {
+                // Ignore the result if another server.xml was loaded in the meantime
+                if (editor == configEditor) {
+                    showFindings(result);
+                }
+            }
+
+            @Override
+            protected void onError(IOException e) {
+                showError("Unable to read " + editor.getFile().getName() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private void showFindings(List<TuningFinding> result) {
+        findings = result;
+        findingModel.setRowCount(0);
+        for (TuningFinding finding : findings) {
+            findingModel.addRow(new Object[] {finding.getRule(), finding.getElement(), finding.getProblem(),
+                    finding.getFixDescription()});
+        }
+    }
+
+    private void applyFixes(final List<TuningFinding> selected) {
+        if (selected.isEmpty()) {
+            return;
+        }
+        final ConfigElementEditor editor = configEditor;
+        service.saveDocument(editor.getFile());
+        service.submit(new ServerXMLTask<Void>() {
+            @Override
+            protected Void compute() throws IOException {
+                advisor.applyFixes(editor, selected);
+                return null;
+            }
+
+            @Override
+            protected void onSuccess(Void result) {
+                onChange.run();
+                refresh();
+            }
+
+            @Override
+            protected void onError(IOException e) {
+                showError("Unable to apply the fixes: " + e.getMessage());
+                refresh();
+            }
+        });
+    }
+
+    private void setEditingEnabled(boolean enabled) {
+        analyzeButton.setEnabled(enabled);
+        fixButton.setEnabled(enabled);
+        fixAllButton.setEnabled(enabled);
+    }
+
+    private void showError(String message) {
+        JOptionPane.showMessageDialog(this, message, "Error", JOptionPane.ERROR_MESSAGE);
+    }
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A performance problem found in server.xml by a TuningRule, along with the change that fixes it. Problems that
+ * can't safely be fixed from server.xml alone are only reported, and have no fix.
+ */
+public class TuningFinding {
+    private final String rule;
+    private final String element;
+    private final String problem;
+    private final String fixDescription;
+    private final TuningFix fix;
+
+    /**
+     * Creates a finding
+     * @param rule The name of the rule that found the problem
+     * @param element The key of the config element the problem is in, e.g. "executor"
+     * @param problem A description of the problem
+     * @param fixDescription A description of what the fix changes, or of what to check if there is no fix
+     * @param fix The fix for the problem, or null if it can only be reported
+     */
+    public TuningFinding(String rule, String element, String problem, String fixDescription, TuningFix fix) {
+        this.rule = rule;
+        this.element = element;
+        this.problem = problem;
+        this.fixDescription = fixDescription;
+        this.fix = fix;
+    }
+
+    public String getRule() { return this.rule; }
+
+    public String getElement() { return this.element; }
+
+    public String getProblem() { return this.problem; }
+
+    public String getFixDescription() { return this.fixDescription; }
+
+    public TuningFix getFix() { return this.fix; }
+
+    public boolean isFixable() { return this.fix != null; }
+
+    /**
+     * Returns a fix that sets an attribute on a config element
+     * @param element The config element
+     * @param name The attribute name
+     * @param value The new value, or null to remove the attribute so Liberty uses its default
+     * @return The fix
+     */
+    public static TuningFix setAttribute(ConfigElement element, String name, String value) {
+        return setAttributes(element, Collections.singletonMap(name, value));
+    }
+
+    /**
+     * Returns a fix that sets several attributes on a config element, adding the element if it isn't there
+     * @param element The config element
+     * @param attributes The attribute names and values. A null value removes the attribute.
+     * @return The fix
+     */
+    public static TuningFix setAttributes(final ConfigElement element, final Map<String, String> attributes) {
+        return new TuningFix() {
+            @Override
+            public void apply(ConfigElementEditor configEditor) throws IOException {
+                configEditor.setAttributes(element, attributes);
+            }
+        };
+    }
+
+    /**
+     * Returns a fix that removes a feature from the featureManager
+     * @param feature The feature to remove
+     * @return The fix
+     */
+    public static TuningFix removeFeature(final String feature) {
+        return new TuningFix() {
+            @Override
+            public void apply(ConfigElementEditor configEditor) throws IOException {
+                ServerXMLFeatureManager.removeFeature(feature, configEditor.getWriter());
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return element + ": " + problem;
+    }
+}
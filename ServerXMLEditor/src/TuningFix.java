@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+import java.io.IOException;
+
+/**
+ * A change to server.xml that fixes a TuningFinding. Fixes are applied inside a ServerXMLWriter transaction,
+ * so several of them can be written to the file at once.
+ */
+public interface TuningFix {
+
+    /**
+     * Applies the fix
+     * @param configEditor The editor for the server.xml file
+     * @throws IOException If server.xml could not be read or written
+     */
+    void apply(ConfigElementEditor configEditor) throws IOException;
+}
@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+import java.util.List;
+
+/**
+ * A check for a server.xml setting that hurts runtime performance. Rules only read the index, so they can be run
+ * on every change even for large configs. Add new rules with TuningAdvisor.addRule().
+ */
+public interface TuningRule {
+
+    /**
+     * @return A short name for the rule, shown in the tool window
+     */
+    String getName();
+
+    /**
+     * Checks the server.xml model for problems
+     * @param index The index of the server.xml file
+     * @return The problems found, or an empty list
+     */
+    List<TuningFinding> evaluate(ServerXMLIndex index);
+}
@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The built in TuningRules, covering the common production performance problems in a Liberty server.xml
+ */
+public class TuningRules {
+    private static final int MIN_THREADS = 10;
+    private static final int MIN_POOL_SIZE = 5;
+    private static final int MIN_OPEN_CONNECTIONS = 100;
+    private static final String DEFAULT_POOL_SIZE = "50";
+    private static final String DEFAULT_KEEP_ALIVE_REQUESTS = "100";
+    private static final String DEFAULT_TRACE_LEVEL = "info";
+    private static final List<String> DETAILED_TRACE_LEVELS = Arrays.asList(
+            "all", "finest", "dump", "finer", "entryexit", "fine", "event", "debug", "detail");
+
+    private TuningRules() {
+
+    }
+
+    /**
+     * @return A new instance of each of the built in rules
+     */
+    public static List<TuningRule> getDefaultRules() {
+        List<TuningRule> rules = new ArrayList<>();
+        rules.add(new ExecutorRule());
+        rules.add(new ConnectionPoolRule());
+        rules.add(new TraceSpecificationRule());
+        rules.add(new KeepAliveRule());
+        rules.add(new TcpOptionsRule());
+        rules.add(new MonitorFeatureRule());
+        return rules;
+    }
+
+    /**
+     * Parses an integer attribute
+     * @return The value, or null if the attribute isn't set or isn't a number (e.g. a ${variable})
+     */
+    private static Integer parseInt(ConfigElement element, String name) {
+        String value = element.getAttribute(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Flags an executor that is capped at too few threads, or that has more core threads than max threads.
+     * Liberty tunes the default executor itself, so the fix is usually to stop overriding it.
+     */
+    public static class ExecutorRule implements TuningRule {
+        @Override
+        public String getName() { return "Thread pool"; }
+
+        @Override
+        public List<TuningFinding> evaluate(ServerXMLIndex index) {
+            List<TuningFinding> findings = new ArrayList<>();
+            for (ConfigElement executor : index.getAll("executor")) {
+                Integer coreThreads = parseInt(executor, "coreThreads");
+                Integer maxThreads = parseInt(executor, "maxThreads");
+                if (maxThreads != null && maxThreads > 0 && maxThreads < MIN_THREADS) {
+                    findings.add(new TuningFinding(getName(), executor.getKey(),
+                            "maxThreads=" + maxThreads + " will queue requests under production load",
+                            "Remove maxThreads so Liberty tunes the pool size",
+                            TuningFinding.setAttribute(executor, "maxThreads", null)));
+                }
+                else if (coreThreads != null && maxThreads != null && maxThreads > 0 && coreThreads > maxThreads) {
+                    findings.add(new TuningFinding(getName(), executor.getKey(),
+                            "coreThreads=" + coreThreads + " is larger than maxThreads=" + maxThreads,
+                            "Set coreThreads to " + maxThreads,
+                            TuningFinding.setAttribute(executor, "coreThreads", String.valueOf(maxThreads))));
+                }
+            }
+            return findings;
+        }
+    }
+
+    /**
+     * Flags connection pools, top level or nested inside a dataSource, that are unbounded (maxPoolSize=0), tiny, or whose minimum is above their maximum
+     */
+    public static class ConnectionPoolRule implements TuningRule {
+        @Override
+        public String getName() { return "Connection pool"; }
+
+        @Override
+        public List<TuningFinding> evaluate(ServerXMLIndex index) {
+            List<TuningFinding> findings = new ArrayList<>();
+            for (ConfigElement connectionManager : index.getAllNamed("connectionManager")) {
+                Integer minPoolSize = parseInt(connectionManager, "minPoolSize");
+                Integer maxPoolSize = parseInt(connectionManager, "maxPoolSize");
+                if (maxPoolSize == null) {
+                    continue;
+                }
+                if (maxPoolSize == 0) {
+                    findings.add(new TuningFinding(getName(), connectionManager.getKey(),
+                            "maxPoolSize=0 lets the pool grow without limit and can overload the database",
+                            "Set maxPoolSize to " + DEFAULT_POOL_SIZE,
+                            TuningFinding.setAttribute(connectionManager, "maxPoolSize", DEFAULT_POOL_SIZE)));
+                }
+                else if (maxPoolSize > 0 && maxPoolSize < MIN_POOL_SIZE) {
+                    findings.add(new TuningFinding(getName(), connectionManager.getKey(),
+                            "maxPoolSize=" + maxPoolSize + " will make requests wait for connections",
+                            "Set maxPoolSize to " + DEFAULT_POOL_SIZE,
+                            TuningFinding.setAttribute(connectionManager, "maxPoolSize", DEFAULT_POOL_SIZE)));
+                }
+                else if (minPoolSize != null && minPoolSize > maxPoolSize) {
+                    findings.add(new TuningFinding(getName(), connectionManager.getKey(),
+                            "minPoolSize=" + minPoolSize + " is larger than maxPoolSize=" + maxPoolSize,
+                            "Set minPoolSize to " + maxPoolSize,
+                            TuningFinding.setAttribute(connectionManager, "minPoolSize", String.valueOf(maxPoolSize))));
+                }
+            }
+            return findings;
+        }
+    }
+
+    /**
+     * Flags trace specifications left at a detailed level (e.g. *=all), which slow down every request.
+     * The fix only turns the detailed clauses down to info, the rest of the specification is kept.
+     */
+    public static class TraceSpecificationRule implements TuningRule {
+        @Override
+        public String getName() { return "Trace"; }
+
+        @Override
+        public List<TuningFinding> evaluate(ServerXMLIndex index) {
+            List<TuningFinding> findings = new ArrayList<>();
+            for (ConfigElement logging : index.getAll("logging")) {
+                String traceSpecification = logging.getAttribute("traceSpecification");
+                if (traceSpecification == null) {
+                    continue;
+                }
+                String fixed = reduceTraceLevels(traceSpecification);
+                if (!fixed.equals(traceSpecification)) {
+                    findings.add(new TuningFinding(getName(), logging.getKey(),
+                            "traceSpecification \"" + traceSpecification + "\" enables detailed trace",
+                            "Set traceSpecification to " + fixed,
+                            TuningFinding.setAttribute(logging, "traceSpecification", fixed)));
+                }
+            }
+            return findings;
+        }
+
+        /**
+         * Turns the detailed clauses of a trace specification down to info.
+         * A trace specification looks like "*=info:com.ibm.ws.webcontainer*=all", clauses can also have a
+         * third "=enabled" or "=disabled" part.
+         */
+        private static String reduceTraceLevels(String traceSpecification) {
+            StringBuilder fixed = new StringBuilder();
+            for (String clause : traceSpecification.split(":", -1)) {
+                if (fixed.length() > 0) {
+                    fixed.append(':');
+                }
+                String[] parts = clause.split("=", -1);
+                boolean disabled = parts.length > 2 && parts[2].trim().equalsIgnoreCase("disabled");
+                if (parts.length > 1 && !disabled && DETAILED_TRACE_LEVELS.contains(parts[1].trim().toLowerCase())) {
+                    parts[1] = DEFAULT_TRACE_LEVEL;
+                    for (int i = 0; i < parts.length; i++) {
+                        fixed.append(i == 0 ? "" : "=").append(parts[i]);
+                    }
+                }
+                else {
+                    fixed.append(clause);
+                }
+            }
+            return fixed.toString();
+        }
+    }
+
+    /**
+     * Reports HTTP endpoints whose httpOptionsRef doesn't match any httpOptions in server.xml, so their keep-alive
+     * settings may be missing, and flags HTTP options, top level or nested inside an httpEndpoint, that turn off keep-alive or close connections after a handful of requests
+     */
+    public static class KeepAliveRule implements TuningRule {
+        @Override
+        public String getName() { return "HTTP keep-alive"; }
+
+        @Override
+        public List<TuningFinding> evaluate(ServerXMLIndex index) {
+            List<TuningFinding> findings = new ArrayList<>();
+            // Included files aren't indexed, so the httpOptions could be defined in one of them
+            boolean hasIncludes = !index.getAll("include").isEmpty();
+            for (ConfigElement httpEndpoint : index.getAllNamed("httpEndpoint")) {
+                String ref = httpEndpoint.getAttribute("httpOptionsRef");
+                // Skip references that use a ${variable}, they can't be resolved here
+                if (!hasIncludes && ref != null && !ref.contains("${") && index.get("httpOptions", ref) == null) {
+                    // Only report it, adding the httpOptions here would override one defined in configDropins
+                    findings.add(new TuningFinding(getName(), httpEndpoint.getKey(),
+                            "httpOptionsRef=" + ref + " doesn't match any httpOptions in server.xml, so the keep-alive settings may be missing",
+                            "Check that httpOptions " + ref + " is defined in configDropins, or add it with keep-alive enabled",
+                            null));
+                }
+            }
+            for (ConfigElement httpOptions : index.getAllNamed("httpOptions")) {
+                Integer maxKeepAliveRequests = parseInt(httpOptions, "maxKeepAliveRequests");
+                if ("false".equalsIgnoreCase(httpOptions.getAttribute("keepAliveEnabled"))) {
+                    findings.add(new TuningFinding(getName(), httpOptions.getKey(),
+                            "keepAliveEnabled=false opens a new connection for every request",
+                            "Set keepAliveEnabled to true",
+                            TuningFinding.setAttribute(httpOptions, "keepAliveEnabled", "true")));
+                }
+                else if (maxKeepAliveRequests != null && maxKeepAliveRequests >= 0 && maxKeepAliveRequests < 10) {
+                    findings.add(new TuningFinding(getName(), httpOptions.getKey(),
+                            "maxKeepAliveRequests=" + maxKeepAliveRequests + " closes connections after very few requests",
+                            "Set maxKeepAliveRequests to " + DEFAULT_KEEP_ALIVE_REQUESTS,
+                            TuningFinding.setAttribute(httpOptions, "maxKeepAliveRequests", DEFAULT_KEEP_ALIVE_REQUESTS)));
+                }
+            }
+            return findings;
+        }
+    }
+
+    /**
+     * Flags TCP options that cap the number of open connections low enough to turn clients away under load
+     */
+    public static class TcpOptionsRule implements TuningRule {
+        @Override
+        public String getName() { return "TCP options"; }
+
+        @Override
+        public List<TuningFinding> evaluate(ServerXMLIndex index) {
+            List<TuningFinding> findings = new ArrayList<>();
+            for (ConfigElement tcpOptions : index.getAllNamed("tcpOptions")) {
+                Integer maxOpenConnections = parseInt(tcpOptions, "maxOpenConnections");
+                if (maxOpenConnections != null && maxOpenConnections >= 0 && maxOpenConnections < MIN_OPEN_CONNECTIONS) {
+                    findings.add(new TuningFinding(getName(), tcpOptions.getKey(),
+                            "maxOpenConnections=" + maxOpenConnections + " refuses connections under production load",
+                            "Remove maxOpenConnections so Liberty uses its default",
+                            TuningFinding.setAttribute(tcpOptions, "maxOpenConnections", null)));
+                }
+            }
+            return findings;
+        }
+    }
+
+    /**
+     * Flags the monitor-1.0 feature, which collects statistics on every request
+     */
+    public static class MonitorFeatureRule implements TuningRule {
+        @Override
+        public String getName() { return "Monitoring"; }
+
+        @Override
+        public List<TuningFinding> evaluate(ServerXMLIndex index) {
+            List<TuningFinding> findings = new ArrayList<>();
+            for (String feature : index.getFeatures()) {
+                if (feature.equalsIgnoreCase("monitor-1.0")) {
+                    findings.add(new TuningFinding(getName(), "featureManager",
+                            feature + " adds overhead to every request, only enable it if the statistics are used",
+                            "Remove the " + feature + " feature",
+                            TuningFinding.removeFeature(feature)));
+                }
+            }
+            return findings;
+        }
+    }
+}